@@ -0,0 +1,17 @@
+package render.casino.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts cache evictions to the other nodes of the cluster.
+ * <p>
+ * The publishing node evicts its own entry itself, the bus only delivers the eviction to peers. A cache without
+ * a subscriber is evicted through the Spring {@link org.springframework.cache.CacheManager} on the receiving node.
+ */
+public interface CacheInvalidationBus {
+
+    //key null clears the whole cache
+    void publish(String cacheName, String key);
+
+    void subscribe(String cacheName, Consumer<String> listener);
+}
@@ -0,0 +1,130 @@
+package render.casino.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link CacheInvalidationBus} over the {@code cache_invalidations} table, polled by every node.
+ * <p>
+ * Each poll re-reads a short overlap window because rows of concurrent transactions may become visible out of order.
+ * Evictions are idempotent, so delivering one twice is harmless while skipping one is not.
+ */
+@Component
+@ConditionalOnProperty(name = "yukitale.app.cacheBus", havingValue = "database", matchIfMissing = true)
+public class DatabaseCacheInvalidationBus implements CacheInvalidationBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseCacheInvalidationBus.class);
+
+    private static final String INSERT = "INSERT INTO cache_invalidations (cache_name, cache_key, node_id, created) VALUES (?, ?, ?, ?)";
+    private static final String SELECT = "SELECT id, cache_name, cache_key, created FROM cache_invalidations WHERE created >= ? AND node_id <> ?";
+    private static final String DELETE = "DELETE FROM cache_invalidations WHERE created < ?";
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    private final Map<String, Consumer<String>> listeners = new ConcurrentHashMap<>();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    //must cover the commit latency and the clock skew between nodes
+    @Value("${yukitale.app.cacheBusOverlapMs:10000}")
+    private long overlapMs;
+
+    @Value("${yukitale.app.cacheBusRetentionMs:3600000}")
+    private long retentionMs;
+
+    private long lastPoll = System.currentTimeMillis();
+
+    //row id -> created, rows seen in the overlap window are applied only once
+    private final Map<Long, Long> applied = new HashMap<>();
+
+    private long lastCleanup = System.currentTimeMillis();
+
+    @Override
+    public void publish(String cacheName, String key) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    insert(cacheName, key);
+                }
+            });
+        } else {
+            insert(cacheName, key);
+        }
+    }
+
+    private void insert(String cacheName, String key) {
+        try {
+            jdbcTemplate.update(INSERT, cacheName, key, nodeId, System.currentTimeMillis());
+        } catch (Exception ex) {
+            LOGGER.error("Cannot publish invalidation of {} {}: {}", cacheName, key, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(String cacheName, Consumer<String> listener) {
+        listeners.put(cacheName, listener);
+    }
+
+    @Scheduled(fixedDelayString = "${yukitale.app.cacheBusPollMs:1000}")
+    public void poll() {
+        long now = System.currentTimeMillis();
+        long since = lastPoll - overlapMs;
+        lastPoll = now;
+        applied.values().removeIf(created -> created < since);
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(SELECT, since, nodeId);
+
+        for (Map<String, Object> row : rows) {
+            long id = ((Number) row.get("id")).longValue();
+            if (applied.putIfAbsent(id, ((Number) row.get("created")).longValue()) != null) {
+                continue;
+            }
+
+            String cacheName = (String) row.get("cache_name");
+            String key = (String) row.get("cache_key");
+
+            Consumer<String> listener = listeners.get(cacheName);
+            if (listener != null) {
+                listener.accept(key);
+                continue;
+            }
+
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache == null) {
+                continue;
+            }
+            if (key == null) {
+                cache.clear();
+            } else {
+                cache.evict(key);
+            }
+        }
+
+        if (now - lastCleanup >= retentionMs) {
+            jdbcTemplate.update(DELETE, now - retentionMs);
+            lastCleanup = now;
+        }
+    }
+}
@@ -16,9 +16,10 @@ import render.casino.model.User;
 import render.casino.payload.request.LoginRequest;
 import render.casino.payload.request.RegisterRequest;
 import render.casino.payload.response.UserInfoResponse;
-import render.casino.repository.UserRepository;
 import render.casino.security.jwt.JwtUtils;
 import render.casino.security.service.UserDetailsImpl;
+import render.casino.service.IdentityResolver;
+import render.casino.service.LoginCounterService;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -32,15 +33,18 @@ public class AuthApiController {
     private AuthenticationManager authenticationManager;
 
     @Autowired
-    private UserRepository userRepository;
+    private JwtUtils jwtUtils;
 
     @Autowired
-    private JwtUtils jwtUtils;
+    private LoginCounterService loginCounterService;
+
+    @Autowired
+    private IdentityResolver identityResolver;
 
     @PostMapping("/login")
+    //the per-account limit is checked by AuthRateLimitFilter before the body is parsed
     public ResponseEntity<?> loginUser(@Valid @RequestBody LoginRequest loginRequest) {
-        User user = userRepository.findByEmail(loginRequest.getEmail().toLowerCase())
-                .orElse(userRepository.findByUsername(loginRequest.getEmail()).orElse(null));
+        User user = identityResolver.resolve(loginRequest.getEmail());
         if (user == null) {
             return ResponseEntity.badRequest().body("user_not_found");
         }
@@ -74,9 +78,7 @@ public class AuthApiController {
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toList());
 
-        user.setAuthCount(user.getAuthCount() + 1);
-
-        userRepository.save(user);
+        loginCounterService.increment(user.getId());
 
         return ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, jwtCookie.toString())
                 .body(new UserInfoResponse(userDetails.getId(),
@@ -0,0 +1,30 @@
+package render.casino.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "cache_invalidations", indexes = @Index(name = "idx_cache_invalidations_created", columnList = "created"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class CacheInvalidation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(length = 64, nullable = false)
+    private String cacheName;
+
+    //null clears the whole cache
+    @Column(length = 128)
+    private String cacheKey;
+
+    @Column(length = 32, nullable = false)
+    private String nodeId;
+
+    private long created;
+}
@@ -0,0 +1,22 @@
+package render.casino.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import render.casino.util.Money;
+
+import java.math.BigDecimal;
+
+//long minor units in the entity, DECIMAL(19,2) units in the column
+@Converter
+public class MoneyConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long amount) {
+        return amount == null ? null : Money.toUnits(amount);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal units) {
+        return units == null ? Money.ZERO : Money.ofUnits(units);
+    }
+}
@@ -0,0 +1,41 @@
+package render.casino.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+//registrations and deposits of the users registered on one day through one referrer, see ReferrerStatsUpdater
+@Entity
+@Table(name = "referrer_daily_stats", indexes = @Index(name = "idx_referrer_daily_stats_day", columnList = "day"))
+@IdClass(ReferrerDailyStats.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class ReferrerDailyStats {
+
+    @Id
+    private LocalDate day;
+
+    @Id
+    @Column(length = 128)
+    private String referrer;
+
+    private long registrations;
+
+    private long depositsCount;
+
+    //minor units, see Money
+    private long depositsSum;
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    @Getter
+    public static class Key implements Serializable {
+
+        private LocalDate day;
+        private String referrer;
+    }
+}
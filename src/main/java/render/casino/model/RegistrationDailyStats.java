@@ -0,0 +1,48 @@
+package render.casino.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+//registrations per day, country, promocode and domain, see RegistrationStatsUpdater; missing values are stored as ''
+@Entity
+@Table(name = "registration_daily_stats", indexes = {
+        @Index(name = "idx_registration_daily_stats_day", columnList = "day"),
+        @Index(name = "idx_registration_daily_stats_promocode", columnList = "promocode_name, day")
+})
+@IdClass(RegistrationDailyStats.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class RegistrationDailyStats {
+
+    @Id
+    private LocalDate day;
+
+    @Id
+    @Column(length = 8)
+    private String countryCode;
+
+    @Id
+    private String promocodeName;
+
+    @Id
+    @Column(length = 64)
+    private String domain;
+
+    private long registrations;
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    @Getter
+    public static class Key implements Serializable {
+
+        private LocalDate day;
+        private String countryCode;
+        private String promocodeName;
+        private String domain;
+    }
+}
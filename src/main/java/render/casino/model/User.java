@@ -1,5 +1,6 @@
 package  render.casino.model;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -11,19 +12,27 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import render.casino.util.GeoUtil;
-import render.casino.util.MyDecimal;
+import render.casino.util.IpUtil;
+import render.casino.util.Money;
 import render.casino.util.StringUtil;
 
 import java.security.SecureRandom;
 import java.util.*;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_reg_ip_address", columnList = "reg_ip_address"),
+        @Index(name = "idx_users_last_ip_address", columnList = "last_ip_address"),
+        @Index(name = "idx_users_registered", columnList = "registered")
+})
+@EntityListeners({UserStatsListener.class, UserIdentityListener.class})
 @Getter
 @Setter
 @NoArgsConstructor
 public class User {
 
+    public static final long ONLINE_TIMEOUT_MS = 10 * 1000;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
@@ -91,17 +100,31 @@ public class User {
     @Size(max = 64)
     private String lastIp;
 
+    //regIp and lastIp as 16 bytes, IPv4 mapped into ::ffff:0:0/96, so both families compare and range-scan as one
+    @Column(columnDefinition = "VARBINARY(16)")
+    private byte[] regIpAddress;
+
+    @Column(columnDefinition = "VARBINARY(16)")
+    private byte[] lastIpAddress;
+
     private long lastActivity;
 
     private long lastOnline;
 
     private boolean firstDepositBonusEnabled;
 
-    private double firstDepositBonusAmount;
+    //money fields are long minor units, see Money
+    @Convert(converter = MoneyConverter.class)
+    @Column(columnDefinition = "DECIMAL(19,2) DEFAULT 0")
+    private long firstDepositBonusAmount;
 
+    //maintained only by LoginCounterService relative updates, a stale entity save must not overwrite them
+    @Column(updatable = false)
     private int authCount;
 
-    private double verifDepositAmount;
+    @Convert(converter = MoneyConverter.class)
+    @Column(columnDefinition = "DECIMAL(19,2) DEFAULT 0")
+    private long verifDepositAmount;
 
     @Column(columnDefinition = "DOUBLE DEFAULT 0")
     private double btcVerifDepositAmount;
@@ -135,15 +158,30 @@ public class User {
     @Column(columnDefinition = "INT DEFAULT 0")
     private int smartDepositStep;
 
-    private double deposits;
+    @Convert(converter = MoneyConverter.class)
+    @Column(columnDefinition = "DECIMAL(19,2) DEFAULT 0")
+    private long deposits;
 
     @Column(columnDefinition = "TINYINT DEFAULT 0")
     private int roleType;
 
-    @ManyToOne(cascade={CascadeType.ALL})
+    @Column(columnDefinition = "INT DEFAULT 0")
+    private int tokenVersion;
+
+    //one bit per UserRoleType ordinal, mirrors user_roles so role checks never touch the lazy collection; only the role
+    //methods below change it, existing rows are filled by db/role_mask.sql
+    @Setter(AccessLevel.NONE)
+    @Column(columnDefinition = "INT DEFAULT 0")
+    private int roleMask;
+
+    @ManyToOne(fetch = FetchType.LAZY, cascade={CascadeType.ALL})
     @JoinColumn(name="support_id")
     private User support;
 
+    //state last seen by UserStatsListener
+    @Transient
+    private UserStatsSnapshot statsSnapshot;
+
     @OneToMany(mappedBy="support")
     private Set<User> supported = new HashSet<>();
 
@@ -154,13 +192,13 @@ public class User {
     private Set<UserRole> userRoles = new HashSet<>();
 
     //todo: first deposit bonus amount/enabled
-    public User(String username, String email, String password, String promocodeName, String domain, String regIp, String platform, String countryCode, boolean firstDepositBonusEnabled, double firstDepositBonusAmount, boolean emailConfirmed, boolean invUser) {
+    public User(String username, String email, String password, String promocodeName, String domain, String regIp, String platform, String countryCode, boolean firstDepositBonusEnabled, long firstDepositBonusAmount, boolean emailConfirmed, boolean invUser) {
         this.username = username;
         this.email = email;
         this.password = password;
         this.promocodeName = promocodeName;
-        this.regIp = regIp;
-        this.lastIp = regIp;
+        setRegIp(regIp);
+        setLastIp(regIp);
         this.lastActivity = System.currentTimeMillis();
         this.lastOnline = this.lastActivity;
         this.domain = domain;
@@ -176,7 +214,7 @@ public class User {
         this.roleType = UserRoleType.ROLE_USER.ordinal();
     }
 
-    public User(String username, String firstName, String lastName, String email, String phone, String password, String promocodeName, String domain, String regIp, String platform, String countryCode, boolean firstDepositBonusEnabled, double firstDepositBonusAmount, boolean emailConfirmed, boolean invUser) {
+    public User(String username, String firstName, String lastName, String email, String phone, String password, String promocodeName, String domain, String regIp, String platform, String countryCode, boolean firstDepositBonusEnabled, long firstDepositBonusAmount, boolean emailConfirmed, boolean invUser) {
         this.username = username;
         this.firstName = firstName;
         this.lastName = lastName;
@@ -184,8 +222,8 @@ public class User {
         this.phone = phone;
         this.password = password;
         this.promocodeName = promocodeName;
-        this.regIp = regIp;
-        this.lastIp = regIp;
+        setRegIp(regIp);
+        setLastIp(regIp);
         this.lastActivity = System.currentTimeMillis();
         this.lastOnline = this.lastActivity;
         this.domain = domain;
@@ -201,6 +239,31 @@ public class User {
         this.roleType = UserRoleType.ROLE_USER.ordinal();
     }
 
+    //proxy chains and ports are cut down to the canonical first hop, anything that is not a literal is kept as it is
+    public void setRegIp(String regIp) {
+        String address = IpUtil.normalize(regIp);
+        this.regIp = address == null ? regIp : address;
+        this.regIpAddress = IpUtil.toBinary(regIp);
+    }
+
+    public void setLastIp(String lastIp) {
+        String address = IpUtil.normalize(lastIp);
+        this.lastIp = address == null ? lastIp : address;
+        this.lastIpAddress = IpUtil.toBinary(lastIp);
+    }
+
+    //rows written before the binary columns existed get them on their next save or from db/ip_addresses.sql
+    @PrePersist
+    @PreUpdate
+    private void fillIpAddresses() {
+        if (this.regIpAddress == null && this.regIp != null) {
+            this.regIpAddress = IpUtil.toBinary(this.regIp);
+        }
+        if (this.lastIpAddress == null && this.lastIp != null) {
+            this.lastIpAddress = IpUtil.toBinary(this.lastIp);
+        }
+    }
+
     public void addToSupported(User userToAdd) {
         supported.add(userToAdd);
         userToAdd.setSupport(this);
@@ -211,38 +274,49 @@ public class User {
         userToRemove.setSupport(null);
     }
 
+    public void setUserRoles(Set<UserRole> userRoles) {
+        this.userRoles = userRoles;
+        updateRoleMask(UserRoleType.maskOf(userRoles));
+    }
+
+    public void addRole(UserRole role) {
+        this.userRoles.add(role);
+        updateRoleMask(this.roleMask | role.getName().mask());
+    }
+
+    public void removeRole(UserRole role) {
+        this.userRoles.remove(role);
+        updateRoleMask(UserRoleType.maskOf(this.userRoles));
+    }
+
+    private void updateRoleMask(int roleMask) {
+        this.roleMask = roleMask;
+        this.roleType = UserRoleType.primaryOf(roleMask).ordinal();
+    }
+
     @Transient
     public boolean isAdmin() {
-        return this.userRoles.stream().anyMatch(userRole -> userRole.getName() == UserRoleType.ROLE_ADMIN);
+        return UserRoleType.ROLE_ADMIN.in(this.roleMask);
     }
 
     @Transient
     public boolean isWorker() {
-        return this.userRoles.stream().anyMatch(userRole -> userRole.getName() == UserRoleType.ROLE_WORKER);
+        return UserRoleType.ROLE_WORKER.in(this.roleMask);
     }
 
     @Transient
     public boolean isSupporter() {
-        return this.userRoles.stream().anyMatch(userRole -> userRole.getName() == UserRoleType.ROLE_SUPPORTER);
+        return UserRoleType.ROLE_SUPPORTER.in(this.roleMask);
     }
 
     @Transient
     public boolean isStaff() {
-        return isAdmin() || isWorker() || isSupporter();
+        return (this.roleMask & UserRoleType.STAFF_MASK) != 0;
     }
 
     @Transient
     public String getFormattedLastActivity() {
-        long diff = (System.currentTimeMillis() - this.lastActivity) / 1000L;
-        if (diff < 60) {
-            return diff + " сек. назад";
-        } else if (diff > 86400) {
-            return StringUtil.formatDate(new Date(this.lastActivity));
-        } else if (diff > 3600) {
-            return diff / 3600 + "ч. назад";
-        } else {
-            return diff / 60 + " мин. назад";
-        }
+        return StringUtil.formatLastActivity(this.lastActivity);
     }
 
     @Transient
@@ -252,7 +326,7 @@ public class User {
 
     @Transient
     public String formattedLastActivityEng() {
-        return StringUtil.formatDate(new Date(this.lastActivity));
+        return StringUtil.formatDate(this.lastActivity);
     }
 
     @Transient
@@ -262,12 +336,16 @@ public class User {
 
     @Transient
     public boolean isOnline() {
-        return this.lastOnline >= System.currentTimeMillis() - (10 * 1000);
+        return isOnline(this.lastOnline);
+    }
+
+    public static boolean isOnline(long lastOnline) {
+        return lastOnline >= System.currentTimeMillis() - ONLINE_TIMEOUT_MS;
     }
 
     @Transient
-    public MyDecimal formattedDeposits() {
-        return new MyDecimal(this.deposits, true);
+    public String formattedDeposits() {
+        return Money.format(this.deposits);
     }
 
     @Transient
@@ -0,0 +1,36 @@
+package render.casino.model;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import render.casino.service.IdentityResolver;
+
+//drops the remembered misses of a registered or renamed user once it is committed, other nodes forget them on expiry
+@Component
+public class UserIdentityListener {
+
+    @Lazy
+    @Autowired
+    private IdentityResolver identityResolver;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(User user) {
+        String username = user.getUsername();
+        String email = user.getEmail();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    identityResolver.forget(username, email);
+                }
+            });
+        } else {
+            identityResolver.forget(username, email);
+        }
+    }
+}
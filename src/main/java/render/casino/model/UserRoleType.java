@@ -1,9 +1,47 @@
 package render.casino.model;
 
+import java.util.Collection;
+
 public enum UserRoleType {
 
   ROLE_USER,
   ROLE_WORKER,
   ROLE_ADMIN,
   ROLE_SUPPORTER;
+
+  private static final UserRoleType[] VALUES = values();
+
+  public static final int STAFF_MASK = ROLE_WORKER.mask() | ROLE_ADMIN.mask() | ROLE_SUPPORTER.mask();
+
+  public int mask() {
+    return 1 << ordinal();
+  }
+
+  public boolean in(int roleMask) {
+    return (roleMask & mask()) != 0;
+  }
+
+  public static UserRoleType byOrdinal(int ordinal) {
+    return VALUES[ordinal];
+  }
+
+  public static int maskOf(Collection<UserRole> roles) {
+    int mask = 0;
+    for (UserRole role : roles) {
+      mask |= role.getName().mask();
+    }
+    return mask;
+  }
+
+  //the role stored in users.role_type, the most privileged one the user has
+  public static UserRoleType primaryOf(int roleMask) {
+    if (ROLE_ADMIN.in(roleMask)) {
+      return ROLE_ADMIN;
+    } else if (ROLE_SUPPORTER.in(roleMask)) {
+      return ROLE_SUPPORTER;
+    } else if (ROLE_WORKER.in(roleMask)) {
+      return ROLE_WORKER;
+    }
+    return ROLE_USER;
+  }
 }
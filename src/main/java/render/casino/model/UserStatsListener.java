@@ -0,0 +1,70 @@
+package render.casino.model;
+
+import jakarta.persistence.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Reports every insert, update or delete of a {@link User} to the {@link UserStatsSink}s as the state before and after
+ * it, once the transaction has committed. The previous state is kept on the entity itself, captured when it is
+ * loaded or written.
+ */
+@Component
+public class UserStatsListener {
+
+    @Lazy
+    @Autowired
+    private List<UserStatsSink> sinks;
+
+    @PostLoad
+    public void onLoad(User user) {
+        user.setStatsSnapshot(UserStatsSnapshot.of(user));
+    }
+
+    @PostPersist
+    public void onPersist(User user) {
+        UserStatsSnapshot current = UserStatsSnapshot.of(user);
+        record(null, current);
+        user.setStatsSnapshot(current);
+    }
+
+    @PostUpdate
+    public void onUpdate(User user) {
+        UserStatsSnapshot current = UserStatsSnapshot.of(user);
+        //without a previous state there is nothing to take the difference against
+        if (user.getStatsSnapshot() != null) {
+            record(user.getStatsSnapshot(), current);
+        }
+        user.setStatsSnapshot(current);
+    }
+
+    @PostRemove
+    public void onRemove(User user) {
+        record(user.getStatsSnapshot(), null);
+        user.setStatsSnapshot(null);
+    }
+
+    private void record(UserStatsSnapshot before, UserStatsSnapshot after) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(before, after);
+                }
+            });
+        } else {
+            apply(before, after);
+        }
+    }
+
+    private void apply(UserStatsSnapshot before, UserStatsSnapshot after) {
+        for (UserStatsSink sink : sinks) {
+            sink.apply(before, after);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package render.casino.model;
+
+//receives the committed changes UserStatsListener sees, before is null for a new user and after for a removed one
+public interface UserStatsSink {
+
+    void apply(UserStatsSnapshot before, UserStatsSnapshot after);
+}
@@ -0,0 +1,61 @@
+package render.casino.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+//the values of a User that the statistics rollups aggregate, as they were last loaded or written; missing strings are ''
+@AllArgsConstructor
+@EqualsAndHashCode
+@Getter
+public class UserStatsSnapshot {
+
+    //registration days are UTC days wherever they are computed, independent of the JVM and the database session zone
+    public static final ZoneId ZONE = ZoneOffset.UTC;
+
+    //the users columns of(ResultSet) reads, deposits in minor units
+    public static final String SELECT = "SELECT id, registered, referrer, reg_country_code, promocode_name, domain, platform, " +
+            "deposits_count, ROUND(deposits * 100) FROM users";
+
+    private final long id;
+    private final LocalDate registeredDay;
+    private final String referrer;
+    private final String countryCode;
+    private final String promocodeName;
+    private final String domain;
+    private final String platform;
+    private final long depositsCount;
+    private final long deposits;
+
+    public static UserStatsSnapshot of(User user) {
+        return new UserStatsSnapshot(user.getId(), toDay(user.getRegistered()), orEmpty(user.getReferrer()), orEmpty(user.getRegCountryCode()),
+                orEmpty(user.getPromocodeName()), orEmpty(user.getDomain()), orEmpty(user.getPlatform()),
+                user.getDepositsCount(), user.getDeposits());
+    }
+
+    public static UserStatsSnapshot of(ResultSet resultSet) throws SQLException {
+        return new UserStatsSnapshot(resultSet.getLong(1), toDay(resultSet.getTimestamp(2)), orEmpty(resultSet.getString(3)), orEmpty(resultSet.getString(4)),
+                orEmpty(resultSet.getString(5)), orEmpty(resultSet.getString(6)), orEmpty(resultSet.getString(7)),
+                resultSet.getLong(8), resultSet.getLong(9));
+    }
+
+    public static LocalDate toDay(Date date) {
+        return date == null ? null : LocalDate.ofInstant(date.toInstant(), ZONE);
+    }
+
+    //start of the day after the one of date, the rollup rows from that day on cover whole days after date
+    public static Date startOfNextDay(Date date) {
+        return Date.from(toDay(date).plusDays(1).atStartOfDay(ZONE).toInstant());
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
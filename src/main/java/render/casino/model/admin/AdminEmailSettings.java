@@ -10,6 +10,7 @@ import org.apache.commons.lang.StringUtils;
 
 @Entity
 @Table(name = "admin_email_settings")
+@EntityListeners(AdminEmailSettingsListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,35 @@
+package render.casino.model.admin;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import render.casino.cache.CacheInvalidationBus;
+
+@Component
+public class AdminEmailSettingsListener {
+
+    @Lazy
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Lazy
+    @Autowired
+    private CacheManager cacheManager;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(AdminEmailSettings settings) {
+        //the bus skips the publishing node, so the local entry is cleared here
+        Cache cache = cacheManager.getCache("admin_email_settings");
+        if (cache != null) {
+            cache.clear();
+        }
+        cacheInvalidationBus.publish("admin_email_settings", null);
+    }
+}
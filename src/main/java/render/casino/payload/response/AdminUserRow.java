@@ -0,0 +1,66 @@
+package render.casino.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import render.casino.model.User;
+import render.casino.util.GeoUtil;
+import render.casino.util.Money;
+import render.casino.util.StringUtil;
+
+import java.util.Date;
+
+/**
+ * One row of an admin user listing: the columns the tables show, without the entity graph behind them. Built directly
+ * by the {@code UserRepository.findRows*} constructor queries, {@link #geolocation} is filled in for a whole page at
+ * once by {@code AdminUserService}.
+ */
+@AllArgsConstructor
+@Getter
+public class AdminUserRow {
+
+    private final long id;
+    private final String username;
+    private final String email;
+    private final String domain;
+    private final String promocodeName;
+    private final int roleType;
+    private final String lastIp;
+    private final long lastActivity;
+    private final long lastOnline;
+    private final Date registered;
+    private final long deposits;
+    private final String supportUsername;
+
+    @Setter
+    private GeoUtil.GeoData geolocation;
+
+    //the constructor expression of the projection queries, keep the argument order in sync with them
+    public AdminUserRow(long id, String username, String email, String domain, String promocodeName, int roleType, String lastIp,
+                        long lastActivity, long lastOnline, Date registered, long deposits, String supportUsername) {
+        this(id, username, email, domain, promocodeName, roleType, lastIp, lastActivity, lastOnline, registered, deposits, supportUsername, null);
+    }
+
+    public static AdminUserRow of(User user) {
+        User support = user.getSupport();
+        return new AdminUserRow(user.getId(), user.getUsername(), user.getEmail(), user.getDomain(), user.getPromocodeName(),
+                user.getRoleType(), user.getLastIp(), user.getLastActivity(), user.getLastOnline(), user.getRegistered(),
+                user.getDeposits(), support == null ? null : support.getUsername());
+    }
+
+    public boolean isOnline() {
+        return User.isOnline(this.lastOnline);
+    }
+
+    public String getFormattedLastActivity() {
+        return StringUtil.formatLastActivity(this.lastActivity);
+    }
+
+    public String getFormattedRegistered() {
+        return StringUtil.formatDate(this.registered);
+    }
+
+    public String formattedDeposits() {
+        return Money.format(this.deposits);
+    }
+}
@@ -0,0 +1,63 @@
+package render.casino.repository;
+
+import org.antlr.v4.runtime.misc.Triple;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import render.casino.model.ReferrerDailyStats;
+import render.casino.model.UserStatsSnapshot;
+
+import java.time.LocalDate;
+import java.util.*;
+
+@Repository
+public interface ReferrerDailyStatsRepository extends JpaRepository<ReferrerDailyStats, ReferrerDailyStats.Key> {
+
+  @Query("SELECT s.referrer, sum(s.registrations) AS registrations, sum(s.depositsCount), sum(s.depositsSum) FROM ReferrerDailyStats s GROUP BY s.referrer ORDER by registrations DESC")
+  List<Object[]> sumByReferrer();
+
+  @Query("SELECT s.referrer, sum(s.registrations) AS registrations, sum(s.depositsCount), sum(s.depositsSum) FROM ReferrerDailyStats s WHERE s.day >= :startDay GROUP BY s.referrer ORDER by registrations DESC")
+  List<Object[]> sumByReferrer(@Param("startDay") LocalDate startDay);
+
+  //referrer -> registrations, deposits count, deposits sum in minor units
+  default Map<String, Triple<Long, Long, Long>> findRegistrationsByRefersAsMap() {
+    return toMap(sumByReferrer());
+  }
+
+  //registrations in [startDate, endDate) counted from users, deposits in minor units like the rollup
+  @Query(value = "SELECT referrer, count(id), CAST(sum(deposits_count) AS SIGNED), CAST(sum(ROUND(deposits * 100)) AS SIGNED) FROM users WHERE registered >= :startDate AND registered < :endDate GROUP BY referrer", nativeQuery = true)
+  List<Object[]> sumUsersByReferrer(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+  //registrations from startDate on: the rest of its day is counted from users, the whole days after it from the rollup
+  default Map<String, Triple<Long, Long, Long>> findRegistrationsByRefersAsMap(Date startDate) {
+    Date nextDay = UserStatsSnapshot.startOfNextDay(startDate);
+    List<Object[]> rows = new ArrayList<>(sumByReferrer(UserStatsSnapshot.toDay(nextDay)));
+    rows.addAll(sumUsersByReferrer(startDate, nextDay));
+    return toMap(rows);
+  }
+
+  //rows of one referrer are added up, ordered by registrations
+  private static Map<String, Triple<Long, Long, Long>> toMap(List<Object[]> rows) {
+    Map<String, long[]> sums = new LinkedHashMap<>();
+    for (Object[] objects : rows) {
+      String referrer = (String) objects[0];
+      if (referrer == null || referrer.isEmpty()) {
+        referrer = "N/A";
+      }
+
+      long[] sum = sums.computeIfAbsent(referrer, key -> new long[3]);
+      for (int i = 0; i < sum.length; i++) {
+        sum[i] += ((Number) objects[i + 1]).longValue();
+      }
+    }
+
+    Map<String, Triple<Long, Long, Long>> registrations = new LinkedHashMap<>();
+    sums.entrySet().stream()
+            .filter(entry -> entry.getValue()[0] != 0)
+            .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0]).reversed())
+            .forEach(entry -> registrations.put(entry.getKey(), new Triple<>(entry.getValue()[0], entry.getValue()[1], entry.getValue()[2])));
+
+    return registrations;
+  }
+}
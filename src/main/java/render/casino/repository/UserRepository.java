@@ -2,6 +2,7 @@ package render.casino.repository;
 
 import org.antlr.v4.runtime.misc.Triple;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,7 +10,11 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import render.casino.model.User;
+import render.casino.model.UserStatsSnapshot;
+import render.casino.payload.response.AdminUserRow;
+import render.casino.util.IpUtil;
 
+import java.time.LocalDate;
 import java.util.*;
 
 @Repository
@@ -21,12 +26,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
   Optional<User> findByEmail(String email);
 
-  //refers start
-  @Query("SELECT u.referrer, count(u.id) AS registrations, sum(u.depositsCount), sum(u.deposits) FROM User u GROUP BY u.referrer ORDER by registrations DESC")
+  List<User> findAllByEmailOrUsername(String email, String username);
+
+  //refers start, the dashboard reads ReferrerDailyStatsRepository instead of scanning users
+  //deposits are summed in minor units on the database side, a JPQL sum over the converted attribute has no fixed unit
+  @Query(value = "SELECT referrer, count(id) AS registrations, CAST(sum(deposits_count) AS SIGNED), CAST(sum(ROUND(deposits * 100)) AS SIGNED) FROM users GROUP BY referrer ORDER by registrations DESC", nativeQuery = true)
   List<Object[]> findRegistrationsByRefers();
 
-  default Map<String, Triple<Long, Long, Double>> findRegistrationsByRefersAsMap() {
-    Map<String, Triple<Long, Long, Double>> registrations = new LinkedHashMap<>();
+  @Deprecated
+  default Map<String, Triple<Long, Long, Long>> findRegistrationsByRefersAsMap() {
+    Map<String, Triple<Long, Long, Long>> registrations = new LinkedHashMap<>();
     for (Object[] objects : findRegistrationsByRefers()) {
       String referrer = (String) objects[0];
       if (referrer.isEmpty()) {
@@ -35,7 +44,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
       long users = (long) objects[1];
       long depositsCount = (long) objects[2];
-      double depositsPrice = (double) objects[3];
+      long depositsPrice = (long) objects[3];
 
       registrations.put(referrer, new Triple<>(users, depositsCount, depositsPrice));
     }
@@ -43,11 +52,12 @@ public interface UserRepository extends JpaRepository<User, Long> {
     return registrations;
   }
 
-  @Query("SELECT u.referrer, count(u.id) AS registrations, sum(u.depositsCount), sum(u.deposits) FROM User u WHERE u.registered >= :startDate GROUP BY u.referrer ORDER by registrations DESC")
+  @Query(value = "SELECT referrer, count(id) AS registrations, CAST(sum(deposits_count) AS SIGNED), CAST(sum(ROUND(deposits * 100)) AS SIGNED) FROM users WHERE registered >= :startDate GROUP BY referrer ORDER by registrations DESC", nativeQuery = true)
   List<Object[]> findRegistrationsByRefers(@Param("startDate") Date startDate);
 
-  default Map<String, Triple<Long, Long, Double>> findRegistrationsByRefersAsMap(@Param("startDate") Date startDate) {
-    Map<String, Triple<Long, Long, Double>> registrations = new LinkedHashMap<>();
+  @Deprecated
+  default Map<String, Triple<Long, Long, Long>> findRegistrationsByRefersAsMap(@Param("startDate") Date startDate) {
+    Map<String, Triple<Long, Long, Long>> registrations = new LinkedHashMap<>();
     for (Object[] objects : findRegistrationsByRefers(startDate)) {
       String referrer = (String) objects[0];
       if (referrer.isEmpty()) {
@@ -56,7 +66,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
       long users = (long) objects[1];
       long depositsCount = (long) objects[2];
-      double depositsPrice = (double) objects[3];
+      long depositsPrice = (long) objects[3];
 
       registrations.put(referrer, new Triple<>(users, depositsCount, depositsPrice));
     }
@@ -65,51 +75,62 @@ public interface UserRepository extends JpaRepository<User, Long> {
   }
   //refers end
 
-  @Query("SELECT u.regCountryCode, count(u.id) AS registrations FROM User u GROUP BY u.regCountryCode ORDER by registrations DESC")
+  //registration stats are read from the registration_daily_stats rollup, the rest of the day of a startDate from users
+  @Query("SELECT s.countryCode, sum(s.registrations) AS registrations FROM RegistrationDailyStats s GROUP BY s.countryCode ORDER by registrations DESC")
   List<Object[]> findRegistrationsByCountries();
 
   default Map<String, Long> findRegistrationsByCountriesAsMap() {
-    Map<String, Long> registrations = new LinkedHashMap<>();
-    for (Object[] objects : findRegistrationsByCountries()) {
-      registrations.put((String) objects[0], (Long) objects[1]);
-    }
-
-    return registrations;
+    return toRegistrationsMap(findRegistrationsByCountries());
   }
 
-  @Query("SELECT u.regCountryCode, count(u.id) AS registrations FROM User u WHERE u.registered >= :startDate GROUP BY u.regCountryCode ORDER by registrations DESC")
-  List<Object[]> findRegistrationsByCountries(@Param("startDate") Date startDate);
+  @Query("SELECT s.countryCode, sum(s.registrations) AS registrations FROM RegistrationDailyStats s WHERE s.day >= :startDay GROUP BY s.countryCode ORDER by registrations DESC")
+  List<Object[]> findRegistrationsByCountries(@Param("startDay") LocalDate startDay);
 
-  default Map<String, Long> findRegistrationsByCountriesAsMap(@Param("startDate") Date startDate) {
-    Map<String, Long> registrations = new LinkedHashMap<>();
-    for (Object[] objects : findRegistrationsByCountries(startDate)) {
-      registrations.put((String) objects[0], (Long) objects[1]);
-    }
+  @Query("SELECT u.regCountryCode, count(u) FROM User u WHERE u.registered >= :startDate AND u.registered < :endDate GROUP BY u.regCountryCode")
+  List<Object[]> countRegistrationsByCountries(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
 
-    return registrations;
+  default Map<String, Long> findRegistrationsByCountriesAsMap(@Param("startDate") Date startDate) {
+    Date nextDay = UserStatsSnapshot.startOfNextDay(startDate);
+    List<Object[]> rows = new ArrayList<>(findRegistrationsByCountries(UserStatsSnapshot.toDay(nextDay)));
+    rows.addAll(countRegistrationsByCountries(startDate, nextDay));
+    return toRegistrationsMap(rows);
   }
 
-  @Query("SELECT u.regCountryCode, count(u.id) AS registrations FROM User u WHERE u.promocodeName = :promocodeName AND u.registered >= :startDate GROUP BY u.regCountryCode ORDER by registrations DESC")
-  List<Object[]> findRegistrationsByPromocodeName(@Param("promocodeName") String promocodeName, @Param("startDate") Date startDate);
+  @Query("SELECT s.countryCode, sum(s.registrations) AS registrations FROM RegistrationDailyStats s WHERE s.promocodeName = :promocodeName AND s.day >= :startDay GROUP BY s.countryCode ORDER by registrations DESC")
+  List<Object[]> findRegistrationsByPromocodeName(@Param("promocodeName") String promocodeName, @Param("startDay") LocalDate startDay);
 
-  default Map<String, Long> findRegistrationsByPromocodeNameAsMap(String promocodeName, Date startDate) {
-    Map<String, Long> registrations = new LinkedHashMap<>();
-    for (Object[] objects : findRegistrationsByPromocodeName(promocodeName, startDate)) {
-      registrations.put((String) objects[0], (Long) objects[1]);
-    }
+  @Query("SELECT u.regCountryCode, count(u) FROM User u WHERE u.promocodeName = :promocodeName AND u.registered >= :startDate AND u.registered < :endDate GROUP BY u.regCountryCode")
+  List<Object[]> countRegistrationsByPromocodeName(@Param("promocodeName") String promocodeName, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
 
-    return registrations;
+  default Map<String, Long> findRegistrationsByPromocodeNameAsMap(String promocodeName, Date startDate) {
+    Date nextDay = UserStatsSnapshot.startOfNextDay(startDate);
+    List<Object[]> rows = new ArrayList<>(findRegistrationsByPromocodeName(promocodeName, UserStatsSnapshot.toDay(nextDay)));
+    rows.addAll(countRegistrationsByPromocodeName(promocodeName, startDate, nextDay));
+    return toRegistrationsMap(rows);
   }
 
-  @Query("SELECT u.regCountryCode, count(u.id) AS registrations FROM User u WHERE u.promocodeName = :promocodeName GROUP BY u.regCountryCode ORDER by registrations DESC")
+  @Query("SELECT s.countryCode, sum(s.registrations) AS registrations FROM RegistrationDailyStats s WHERE s.promocodeName = :promocodeName GROUP BY s.countryCode ORDER by registrations DESC")
   List<Object[]> findRegistrationsByPromocodeName(@Param("promocodeName") String promocodeName);
 
   default Map<String, Long> findRegistrationsByPromocodeNameAsMap(String promocodeName) {
-    Map<String, Long> registrations = new LinkedHashMap<>();
-    for (Object[] objects : findRegistrationsByPromocodeName(promocodeName)) {
-      registrations.put((String) objects[0], (Long) objects[1]);
+    return toRegistrationsMap(findRegistrationsByPromocodeName(promocodeName));
+  }
+
+  //rows of one country are added up, ordered by registrations
+  private static Map<String, Long> toRegistrationsMap(List<Object[]> rows) {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (Object[] objects : rows) {
+      //the rollup stores a missing country as '', users as null
+      String countryCode = (String) objects[0];
+      counts.merge(countryCode == null || countryCode.isEmpty() ? null : countryCode, (Long) objects[1], Long::sum);
     }
 
+    Map<String, Long> registrations = new LinkedHashMap<>();
+    counts.entrySet().stream()
+            .filter(entry -> entry.getValue() != 0)
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .forEach(entry -> registrations.put(entry.getKey(), entry.getValue()));
+
     return registrations;
   }
 
@@ -119,18 +140,60 @@ public interface UserRepository extends JpaRepository<User, Long> {
   @Query(value = "SELECT user_id FROM user_roles WHERE role_id = 4;", nativeQuery = true)
   List<Long> findSupporterIds();
 
-  List<User> findAllByLastIpOrRegIpOrderByIdDesc(String lastIp, String regIp);
+  //the text columns hold the normalized form, so any spelling of an address is looked up in binary form; rows saved
+  //before the binary columns existed are filled by db/ip_addresses.sql
+  default List<User> findAllByLastIpOrRegIpOrderByIdDesc(String lastIp, String regIp) {
+    byte[] lastIpAddress = IpUtil.toBinary(lastIp);
+    byte[] regIpAddress = IpUtil.toBinary(regIp);
+    if (lastIpAddress == null && regIpAddress == null) {
+      return new ArrayList<>();
+    }
+
+    //a null parameter would match the rows without an address
+    return findAllByLastIpAddressOrRegIpAddressOrderByIdDesc(lastIpAddress == null ? regIpAddress : lastIpAddress,
+            regIpAddress == null ? lastIpAddress : regIpAddress);
+  }
+
+  //addresses in the 16 byte form of IpUtil.toBinary, a range covers a whole subnet of either family
+  List<User> findAllByLastIpAddressOrRegIpAddressOrderByIdDesc(byte[] lastIpAddress, byte[] regIpAddress);
 
+  List<User> findAllByLastIpAddressBetweenOrderByIdDesc(byte[] from, byte[] to);
+
+  //support is lazy, the listings fetch it in the same select instead of one more per row
+  @EntityGraph(attributePaths = "support")
   List<User> findAllByRoleTypeOrderByLastActivityDesc(int roleType, Pageable pageable);
 
+  @EntityGraph(attributePaths = "support")
   List<User> findAllByOrderByLastActivityDesc(Pageable pageable);
 
+  @EntityGraph(attributePaths = "support")
   List<User> findAllByLastOnlineGreaterThan(long lastActivity);
 
+  @EntityGraph(attributePaths = "support")
   List<User> findAllByRoleTypeAndLastOnlineGreaterThanOrderByLastActivityDesc(int roleType, long lastActivity, Pageable pageable);
 
+  @EntityGraph(attributePaths = "support")
   List<User> findAllByLastOnlineGreaterThanOrderByLastActivityDesc(long lastActivity, Pageable pageable);
 
+  //admin listings as AdminUserRow, only the shown columns and the supporter's username are selected
+  String ADMIN_USER_ROW = "SELECT new render.casino.payload.response.AdminUserRow(u.id, u.username, u.email, u.domain, u.promocodeName, " +
+          "u.roleType, u.lastIp, u.lastActivity, u.lastOnline, u.registered, u.deposits, s.username) FROM User u LEFT JOIN u.support s ";
+
+  @Query(ADMIN_USER_ROW + "ORDER BY u.lastActivity DESC")
+  List<AdminUserRow> findRowsByOrderByLastActivityDesc(Pageable pageable);
+
+  @Query(ADMIN_USER_ROW + "WHERE u.roleType = :roleType ORDER BY u.lastActivity DESC")
+  List<AdminUserRow> findRowsByRoleTypeOrderByLastActivityDesc(@Param("roleType") int roleType, Pageable pageable);
+
+  @Query(ADMIN_USER_ROW + "WHERE u.lastOnline > :lastActivity")
+  List<AdminUserRow> findRowsByLastOnlineGreaterThan(@Param("lastActivity") long lastActivity);
+
+  @Query(ADMIN_USER_ROW + "WHERE u.lastOnline > :lastActivity ORDER BY u.lastActivity DESC")
+  List<AdminUserRow> findRowsByLastOnlineGreaterThanOrderByLastActivityDesc(@Param("lastActivity") long lastActivity, Pageable pageable);
+
+  @Query(ADMIN_USER_ROW + "WHERE u.roleType = :roleType AND u.lastOnline > :lastActivity ORDER BY u.lastActivity DESC")
+  List<AdminUserRow> findRowsByRoleTypeAndLastOnlineGreaterThanOrderByLastActivityDesc(@Param("roleType") int roleType, @Param("lastActivity") long lastActivity, Pageable pageable);
+
   Optional<User> findByRoleTypeAndUsername(int roleType, String username);
 
   Optional<User> findByRoleTypeAndEmail(int roleType, String email);
@@ -146,15 +209,17 @@ public interface UserRepository extends JpaRepository<User, Long> {
   Long countByRoleTypeAndLastOnlineGreaterThan(int roleType, long lastActivity);
 
   //start admin stats
-  @Query("SELECT DATE(u.registered), COUNT(u) " +
-          "FROM User u " +
-          "GROUP BY DATE(u.registered)")
-  List<Object[]> getUsersCountPerDay();
-
-  default Map<Date, Long> getUsersCountPerDayAsMap() {
-    Map<Date, Long> map = new LinkedHashMap<>();
-    for (Object[] objects : getUsersCountPerDay()) {
-      map.put((Date) objects[0], (Long) objects[1]);
+  //registrations per UTC day of the rollup, not per day of the database session zone
+  @Query("SELECT s.day, sum(s.registrations) FROM RegistrationDailyStats s GROUP BY s.day ORDER BY s.day")
+  List<Object[]> getUsersCountPerUtcDay();
+
+  default Map<LocalDate, Long> getUsersCountPerUtcDayAsMap() {
+    Map<LocalDate, Long> map = new LinkedHashMap<>();
+    for (Object[] objects : getUsersCountPerUtcDay()) {
+      long count = (Long) objects[1];
+      if (count != 0) {
+        map.put((LocalDate) objects[0], count);
+      }
     }
 
     return map;
@@ -1,6 +1,6 @@
 package render.casino.repository.admin;
 
-import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
@@ -9,7 +9,8 @@ import render.casino.model.admin.AdminEmailSettings;
 @Repository
 public interface AdminEmailSettingsRepository extends JpaRepository<AdminEmailSettings, Long> {
 
-    @CachePut("admin_email_settings")
+    //findFirst is cached under SimpleKey.EMPTY, not under the saved entity
+    @CacheEvict(value = "admin_email_settings", allEntries = true)
     @Override
     <T extends AdminEmailSettings> T save(T value);
 
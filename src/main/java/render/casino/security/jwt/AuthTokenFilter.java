@@ -1,5 +1,6 @@
 package render.casino.security.jwt;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -9,11 +10,13 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
+import render.casino.security.service.UserDetailsImpl;
 import render.casino.security.service.UserDetailsServiceImpl;
 
 import java.io.IOException;
@@ -40,10 +43,16 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       boolean authorized = false;
       if (requiresAuthentication(requestURI)) {
         String jwt = parseJwt(request);
-        if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-          String email = jwtUtils.getEmailFromJwtToken(jwt);
-
-          UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+        Claims claims = jwt == null ? null : jwtUtils.getValidClaims(jwt);
+        if (claims != null) {
+          UserDetails userDetails = jwtUtils.isStatelessPrincipal() ? jwtUtils.getPrincipalFromClaims(claims) : null;
+          if (userDetails == null) {
+            userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+
+            if (userDetails != null && jwtUtils.isStatelessPrincipal()) {
+              response.addHeader(HttpHeaders.SET_COOKIE, jwtUtils.refreshJwtCookie((UserDetailsImpl) userDetails, claims).toString());
+            }
+          }
 
           if (userDetails != null) {
             UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
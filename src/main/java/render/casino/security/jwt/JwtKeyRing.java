@@ -0,0 +1,229 @@
+package render.casino.security.jwt;
+
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * HS512 signing keys shared by every node through one key ring file.
+ * <p>
+ * The file holds one key per line: {@code <kid> <created millis> <base64 secret>}. Tokens are signed with the newest
+ * key that is older than the activation delay and carry its {@code kid}, while every key still in the ring is accepted
+ * for verification. A rotated key is written to the file before any node signs with it, so all nodes have reloaded it
+ * by the time it becomes active, and a retired key is pruned only once every token it could have signed has expired.
+ */
+@Component
+public class JwtKeyRing {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JwtKeyRing.class);
+
+  private static final int KEY_LENGTH = 64;
+
+  private final SecureRandom random = new SecureRandom();
+
+  //empty path keeps the ring in memory only, every restart logs everybody out
+  @Value("${yukitale.app.jwtKeyRingPath:}")
+  private String keyRingPath;
+
+  //0 disables scheduled rotation
+  @Value("${yukitale.app.jwtKeyRotationMs:604800000}")
+  private long rotationMs;
+
+  //must be longer than the refresh interval so every node loads a new key before it is used for signing
+  @Value("${yukitale.app.jwtKeyActivationDelayMs:180000}")
+  private long activationDelayMs;
+
+  @Value("${yukitale.app.jwtExpirationMs}")
+  private long jwtExpirationMs;
+
+  private volatile Ring ring;
+
+  private long loadedModified;
+
+  @PostConstruct
+  public void init() throws IOException {
+    if (StringUtils.isBlank(keyRingPath)) {
+      this.ring = new Ring(List.of(generateKey(System.currentTimeMillis() - activationDelayMs)));
+      return;
+    }
+
+    updateRing(false);
+  }
+
+  public SigningKey getSigningKey() {
+    return ring.getSigningKey(System.currentTimeMillis());
+  }
+
+  public Key getVerificationKey(String keyId) {
+    SigningKey signingKey = keyId == null ? null : ring.getKeys().get(keyId);
+    return signingKey == null ? null : signingKey.getKey();
+  }
+
+  @Scheduled(initialDelayString = "${yukitale.app.jwtKeyRingRefreshMs:60000}", fixedDelayString = "${yukitale.app.jwtKeyRingRefreshMs:60000}")
+  public void refresh() {
+    if (StringUtils.isBlank(keyRingPath)) {
+      return;
+    }
+
+    try {
+      Path path = Paths.get(keyRingPath);
+      long modified = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : -1;
+      if (modified != loadedModified) {
+        this.ring = new Ring(readKeys(path));
+        this.loadedModified = modified;
+      }
+
+      if (rotationMs > 0 && System.currentTimeMillis() - ring.getNewest().getCreated() >= rotationMs) {
+        updateRing(true);
+      }
+    } catch (Exception ex) {
+      LOGGER.error("Cannot refresh JWT key ring: {}", ex.getMessage());
+    }
+  }
+
+  //re-reads the ring under an exclusive file lock, adds the first or the rotated key and drops expired ones
+  private synchronized void updateRing(boolean rotate) throws IOException {
+    Path path = Paths.get(keyRingPath).toAbsolutePath();
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+
+    Path lockPath = path.resolveSibling(path.getFileName() + ".lock");
+    try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         FileLock ignored = channel.lock()) {
+      List<SigningKey> keys = Files.exists(path) ? readKeys(path) : new ArrayList<>();
+
+      long now = System.currentTimeMillis();
+      boolean changed = false;
+      if (keys.isEmpty()) {
+        keys.add(generateKey(now - activationDelayMs));
+        changed = true;
+      } else if (rotate && now - keys.get(keys.size() - 1).getCreated() >= rotationMs) {
+        keys.add(generateKey(now));
+        changed = true;
+      }
+
+      //a key is retired once its successor is active and unused once every token signed before that has expired
+      for (int i = keys.size() - 2; i >= 0; i--) {
+        if (keys.get(i + 1).getCreated() + activationDelayMs + jwtExpirationMs < now) {
+          keys.subList(0, i + 1).clear();
+          changed = true;
+          break;
+        }
+      }
+
+      if (changed) {
+        writeKeys(path, keys);
+        LOGGER.info("JWT key ring updated, {} keys, newest {}", keys.size(), keys.get(keys.size() - 1).getId());
+      }
+
+      this.ring = new Ring(keys);
+      this.loadedModified = Files.getLastModifiedTime(path).toMillis();
+    }
+  }
+
+  private List<SigningKey> readKeys(Path path) throws IOException {
+    List<SigningKey> keys = new ArrayList<>();
+    for (String line : Files.readAllLines(path, StandardCharsets.US_ASCII)) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      String[] parts = line.split(" ");
+      if (parts.length != 3) {
+        throw new IOException("Invalid JWT key ring line in " + path);
+      }
+      keys.add(new SigningKey(parts[0], Long.parseLong(parts[1]), Keys.hmacShaKeyFor(Base64.getDecoder().decode(parts[2]))));
+    }
+
+    keys.sort(Comparator.comparingLong(SigningKey::getCreated));
+    return keys;
+  }
+
+  private void writeKeys(Path path, List<SigningKey> keys) throws IOException {
+    StringBuilder builder = new StringBuilder("# kid created base64-secret\n");
+    for (SigningKey key : keys) {
+      builder.append(key.getId()).append(' ').append(key.getCreated()).append(' ')
+              .append(Base64.getEncoder().encodeToString(key.getKey().getEncoded())).append('\n');
+    }
+
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    Files.writeString(temp, builder, StandardCharsets.US_ASCII);
+    try {
+      Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+    } catch (UnsupportedOperationException ignored) {}
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private SigningKey generateKey(long created) {
+    byte[] secret = new byte[KEY_LENGTH];
+    random.nextBytes(secret);
+
+    byte[] id = new byte[8];
+    random.nextBytes(id);
+
+    return new SigningKey(HexFormat.of().formatHex(id), created, Keys.hmacShaKeyFor(secret));
+  }
+
+  @AllArgsConstructor
+  @Getter
+  public static class SigningKey {
+
+    private final String id;
+    private final long created;
+    private final Key key;
+  }
+
+  @Getter
+  private class Ring {
+
+    private final Map<String, SigningKey> keys;
+    private final List<SigningKey> ordered;
+
+    private Ring(List<SigningKey> ordered) {
+      if (ordered.isEmpty()) {
+        throw new IllegalStateException("JWT key ring is empty");
+      }
+
+      Map<String, SigningKey> keys = new HashMap<>();
+      for (SigningKey key : ordered) {
+        keys.put(key.getId(), key);
+      }
+
+      this.keys = Collections.unmodifiableMap(keys);
+      this.ordered = List.copyOf(ordered);
+    }
+
+    private SigningKey getNewest() {
+      return ordered.get(ordered.size() - 1);
+    }
+
+    private SigningKey getSigningKey(long now) {
+      for (int i = ordered.size() - 1; i >= 0; i--) {
+        SigningKey key = ordered.get(i);
+        if (key.getCreated() + activationDelayMs <= now) {
+          return key;
+        }
+      }
+      return ordered.get(0);
+    }
+  }
+}
@@ -1,30 +1,66 @@
 package render.casino.security.jwt;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.jsonwebtoken.*;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.util.Pair;
 import org.springframework.http.ResponseCookie;
 import org.springframework.stereotype.Component;
 import org.springframework.web.util.WebUtils;
+import render.casino.model.UserRoleType;
 import render.casino.security.service.UserDetailsImpl;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
-  private final Key jwtSecret = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+  private static final String CLAIM_USER_ID = "uid";
+  private static final String CLAIM_USERNAME = "usr";
+  private static final String CLAIM_ROLES = "rol";
+  private static final String CLAIM_TOKEN_VERSION = "ver";
+  private static final String CLAIM_PRINCIPAL_EXPIRATION = "pex";
+
+  private static final ThreadLocal<MessageDigest> TOKEN_DIGEST = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+
+  @Autowired
+  private JwtKeyRing jwtKeyRing;
+
+  private final JwtParser jwtParser = Jwts.parserBuilder().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+      Key key = jwtKeyRing.getVerificationKey(header.getKeyId());
+      if (key == null) {
+        throw new JwtException("Unknown JWT key id: " + header.getKeyId());
+      }
+      return key;
+    }
+  }).build();
 
   @Value("${yukitale.app.jwtExpirationMs}")
   private long jwtExpirationMs;
@@ -33,6 +69,57 @@ public class JwtUtils {
   @Getter
   private String jwtCookie;
 
+  @Value("${yukitale.app.jwtCacheSize:100000}")
+  private long jwtCacheSize;
+
+  //write user id, username and roles into the token so the filter can skip UserDetailsServiceImpl
+  @Value("${yukitale.app.jwtStatelessPrincipal:false}")
+  @Getter
+  private boolean statelessPrincipal;
+
+  //how long the principal claims are trusted before the filter reloads the user and re-issues the token
+  @Value("${yukitale.app.jwtPrincipalTtlMs:300000}")
+  private long jwtPrincipalTtlMs;
+
+  //token digest -> claims of a token whose signature was already verified, lives until the token's exp
+  private Cache<ByteBuffer, Claims> verifiedTokens;
+
+  //user id -> minimal accepted token version, only needed while an older principal claim is still trusted
+  private Cache<Long, Integer> revokedTokenVersions;
+
+  @PostConstruct
+  public void init() {
+    this.verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(jwtCacheSize)
+            .expireAfter(new Expiry<ByteBuffer, Claims>() {
+              @Override
+              public long expireAfterCreate(ByteBuffer key, Claims claims, long currentTime) {
+                Date expiration = claims.getExpiration();
+                long ttl = expiration == null ? jwtExpirationMs : expiration.getTime() - System.currentTimeMillis();
+                return TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttl));
+              }
+
+              @Override
+              public long expireAfterUpdate(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+                return currentDuration;
+              }
+
+              @Override
+              public long expireAfterRead(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+                return currentDuration;
+              }
+            })
+            .recordStats()
+            .build();
+    this.revokedTokenVersions = Caffeine.newBuilder()
+            .expireAfterWrite(jwtPrincipalTtlMs, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
+  public CacheStats getVerifiedTokenCacheStats() {
+    return verifiedTokens.stats();
+  }
+
   public String getJwtFromCookies(HttpServletRequest request) {
     Cookie cookie = WebUtils.getCookie(request, jwtCookie);
     if (cookie != null) {
@@ -43,7 +130,16 @@ public class JwtUtils {
   }
 
   public ResponseCookie generateJwtCookie(UserDetailsImpl userPrincipal) {
-    String jwt = generateTokenFromEmail(userPrincipal.getEmail());
+    String jwt = statelessPrincipal
+            ? generateTokenFromPrincipal(userPrincipal, new Date((new Date()).getTime() + jwtExpirationMs))
+            : generateTokenFromEmail(userPrincipal.getEmail());
+    return ResponseCookie.from(jwtCookie, jwt).path("/").maxAge(24 * 60 * 60).httpOnly(true).build();
+  }
+
+  //re-issues the token with fresh principal claims, keeping the original expiration of the session
+  public ResponseCookie refreshJwtCookie(UserDetailsImpl userPrincipal, Claims claims) {
+    Date expiration = claims.getExpiration() == null ? new Date((new Date()).getTime() + jwtExpirationMs) : claims.getExpiration();
+    String jwt = generateTokenFromPrincipal(userPrincipal, expiration);
     return ResponseCookie.from(jwtCookie, jwt).path("/").maxAge(24 * 60 * 60).httpOnly(true).build();
   }
 
@@ -52,7 +148,43 @@ public class JwtUtils {
   }
 
   public String getEmailFromJwtToken(String token) {
-    return extractClaims(token).getBody().getSubject();
+    return extractClaims(token).getSubject();
+  }
+
+  //null for a token that is invalid, expired, malformed, unsupported or empty
+  public Claims getValidClaims(String authToken) {
+    try {
+      return extractClaims(authToken);
+    } catch (JwtException | IllegalArgumentException e) {
+      logger.debug("Rejected JWT token, {}: {}", e.getClass().getSimpleName(), e.getMessage());
+      return null;
+    }
+  }
+
+  public UserDetailsImpl getPrincipalFromClaims(Claims claims) {
+    Number userId = claims.get(CLAIM_USER_ID, Number.class);
+    Number principalExpiration = claims.get(CLAIM_PRINCIPAL_EXPIRATION, Number.class);
+    if (userId == null || principalExpiration == null || principalExpiration.longValue() < System.currentTimeMillis()) {
+      return null;
+    }
+
+    int tokenVersion = claims.get(CLAIM_TOKEN_VERSION, Number.class).intValue();
+    Integer revokedVersion = revokedTokenVersions.getIfPresent(userId.longValue());
+    if (revokedVersion != null && tokenVersion < revokedVersion) {
+      return null;
+    }
+
+    int roleMask = 0;
+    for (Object role : claims.get(CLAIM_ROLES, List.class)) {
+      roleMask |= UserRoleType.byOrdinal(((Number) role).intValue()).mask();
+    }
+
+    return UserDetailsImpl.build(userId.longValue(), claims.get(CLAIM_USERNAME, String.class), claims.getSubject(), tokenVersion, roleMask);
+  }
+
+  //principal claims older than the given version are no longer trusted and force a reload of the user
+  public void revokePrincipalClaims(long userId, int tokenVersion) {
+    revokedTokenVersions.asMap().merge(userId, tokenVersion, Math::max);
   }
 
   public boolean validateJwtToken(String authToken) {
@@ -75,31 +207,63 @@ public class JwtUtils {
     return false;
   }
 
-  private Jws<Claims> extractClaims(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token);
+  private Claims extractClaims(String token) {
+    ByteBuffer digest = digest(token);
+    Claims claims = verifiedTokens.getIfPresent(digest);
+    if (claims == null) {
+      claims = jwtParser.parseClaimsJws(token).getBody();
+      verifiedTokens.put(digest, claims);
+    }
+    return claims;
+  }
+
+  private static ByteBuffer digest(String token) {
+    return ByteBuffer.wrap(TOKEN_DIGEST.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
   }
 
   public String generateTokenFromEmail(String email) {
-    return Jwts.builder()
+    return sign(Jwts.builder()
             .setSubject(email)
             .setIssuedAt(new Date())
-            .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-            .signWith(jwtSecret)
-            .compact();
+            .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs)));
   }
 
 
+  public String generateTokenFromPrincipal(UserDetailsImpl userPrincipal, Date expiration) {
+    List<Integer> roles = new ArrayList<>();
+    for (UserRoleType role : UserRoleType.values()) {
+      if (userPrincipal.hasRole(role)) {
+        roles.add(role.ordinal());
+      }
+    }
+
+    return sign(Jwts.builder()
+            .setSubject(userPrincipal.getEmail())
+            .claim(CLAIM_USER_ID, userPrincipal.getId())
+            .claim(CLAIM_USERNAME, userPrincipal.getUsername())
+            .claim(CLAIM_ROLES, roles)
+            .claim(CLAIM_TOKEN_VERSION, userPrincipal.getTokenVersion())
+            .claim(CLAIM_PRINCIPAL_EXPIRATION, System.currentTimeMillis() + jwtPrincipalTtlMs)
+            .setIssuedAt(new Date())
+            .setExpiration(expiration));
+  }
+
   public String generateTokenFromEmailAndPassword(String email, String password) {
-    return Jwts.builder()
+    return sign(Jwts.builder()
             .setSubject(email + ";" + password)
             .setIssuedAt(new Date())
-            .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-            .signWith(jwtSecret)
+            .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs)));
+  }
+
+  private String sign(JwtBuilder builder) {
+    JwtKeyRing.SigningKey signingKey = jwtKeyRing.getSigningKey();
+    return builder.setHeaderParam(JwsHeader.KEY_ID, signingKey.getId())
+            .signWith(signingKey.getKey(), SignatureAlgorithm.HS512)
             .compact();
   }
 
   public Pair<String, String> getEmailAndPasswordFromJwtToken(String token) {
-    String subject = extractClaims(token).getBody().getSubject();
+    String subject = extractClaims(token).getSubject();
     return Pair.of(subject.split(";")[0], subject.split(";")[1]);
   }
 }
@@ -0,0 +1,126 @@
+package render.casino.security.ratelimit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import render.casino.security.xss.LimitedInputStream;
+import render.casino.security.xss.XSSRequestWrapper;
+import render.casino.security.xss.XSSUtils;
+
+import java.io.IOException;
+
+/**
+ * Rejects authentication attempts over the per-IP limit before the body is read, sanitized or parsed, and attempts
+ * over the per-account limit before anything but the account field is parsed.
+ * <p>
+ * The limit is keyed on {@code getRemoteAddr()}, which {@code server.forward-headers-strategy=native} resolves to the
+ * client behind trusted proxies; see application.properties.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AuthRateLimitFilter implements Filter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    //the field of a login body naming the account, an email or a username
+    private static final String ACCOUNT_FIELD = "email";
+
+    @Autowired
+    private AuthRateLimiter authRateLimiter;
+
+    @Value("${yukitale.app.authRateLimitPaths:/api/auth/login,/api/auth/register}")
+    private String[] limitedPaths;
+
+    @Value("${yukitale.app.authAccountRateLimitPaths:/api/auth/login}")
+    private String[] accountPaths;
+
+    @Value("${yukitale.app.authMaxBodyBytes:16384}")
+    private long maxBodyBytes;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        if (!"POST".equals(httpRequest.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String requestURI = httpRequest.getRequestURI();
+        if (isListed(limitedPaths, requestURI) && !authRateLimiter.tryAcquireIp(request.getRemoteAddr())) {
+            reject((HttpServletResponse) response);
+            return;
+        }
+
+        if (isListed(accountPaths, requestURI)) {
+            byte[] body;
+            try {
+                body = new LimitedInputStream(request.getInputStream(), maxBodyBytes).readAllBytes();
+            } catch (LimitedInputStream.BodyTooLargeException ex) {
+                ((HttpServletResponse) response).sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                return;
+            }
+
+            String account = readAccount(body);
+            if (account != null && !authRateLimiter.tryAcquireAccount(account)) {
+                reject((HttpServletResponse) response);
+                return;
+            }
+
+            XSSRequestWrapper wrappedRequest = new XSSRequestWrapper(httpRequest);
+            wrappedRequest.resetInputStream(body);
+            chain.doFilter(wrappedRequest, response);
+            return;
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    //the top-level account field as the controller sees it after the XSS filter, null when there is none
+    static String readAccount(byte[] body) {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                token = parser.nextToken();
+                if (ACCOUNT_FIELD.equals(name) && token == JsonToken.VALUE_STRING) {
+                    return XSSUtils.stripXSSValue(parser.getText());
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException ex) {
+            //malformed bodies are rejected by the controller, the per-IP limit still applies to them
+            return null;
+        }
+    }
+
+    private static void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("too_many_requests");
+    }
+
+    private static boolean isListed(String[] paths, String requestURI) {
+        for (String path : paths) {
+            if (path.equalsIgnoreCase(requestURI)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
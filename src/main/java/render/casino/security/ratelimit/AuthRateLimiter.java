@@ -0,0 +1,47 @@
+package render.casino.security.ratelimit;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import render.casino.util.IpUtil;
+
+/**
+ * Throttles the authentication endpoints per client IP and per target account.
+ */
+@Component
+public class AuthRateLimiter {
+
+    @Value("${yukitale.app.authIpRequestsPerMinute:30}")
+    private int ipRequestsPerMinute;
+
+    @Value("${yukitale.app.authIpBurst:10}")
+    private int ipBurst;
+
+    @Value("${yukitale.app.authAccountRequestsPerMinute:10}")
+    private int accountRequestsPerMinute;
+
+    @Value("${yukitale.app.authAccountBurst:5}")
+    private int accountBurst;
+
+    @Value("${yukitale.app.authRateLimitMaxKeys:100000}")
+    private long maxKeys;
+
+    private RateLimiter ipLimiter;
+    private RateLimiter accountLimiter;
+
+    @PostConstruct
+    public void init() {
+        this.ipLimiter = new RateLimiter(ipRequestsPerMinute, ipBurst, maxKeys);
+        this.accountLimiter = new RateLimiter(accountRequestsPerMinute, accountBurst, maxKeys);
+    }
+
+    //getRemoteAddr spells IPv6 out in full, the canonical form keeps every spelling of one address in one bucket
+    public boolean tryAcquireIp(String ip) {
+        String address = IpUtil.normalize(ip);
+        return ipLimiter.tryAcquire(address == null ? ip : address);
+    }
+
+    public boolean tryAcquireAccount(String identifier) {
+        return accountLimiter.tryAcquire(identifier.toLowerCase());
+    }
+}
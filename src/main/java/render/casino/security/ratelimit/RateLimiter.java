@@ -0,0 +1,47 @@
+package render.casino.security.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: the whole state of a key is one theoretical arrival time, advanced with a
+ * single CAS per permitted request. Keys live in a bounded Caffeine cache and are dropped once idle long enough for
+ * their bucket to be full again, so forgetting them never grants more than a fresh bucket would.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+    private final Cache<String, AtomicLong> arrivals;
+
+    public RateLimiter(int requestsPerMinute, int burst, long maxKeys) {
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, requestsPerMinute);
+        this.burstToleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        this.arrivals = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(intervalNanos + burstToleranceNanos, TimeUnit.NANOSECONDS)
+                .build();
+    }
+
+    public boolean tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong arrival = arrivals.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = arrival.get();
+            long next = Math.max(current, now);
+            if (next - now > burstToleranceNanos) {
+                return false;
+            }
+            if (arrival.compareAndSet(current, next + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    public long size() {
+        return arrivals.estimatedSize();
+    }
+}
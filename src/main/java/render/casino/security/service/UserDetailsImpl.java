@@ -7,11 +7,12 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import render.casino.model.User;
+import render.casino.model.UserRoleType;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 @AllArgsConstructor
 @Getter
@@ -28,19 +29,56 @@ public class UserDetailsImpl implements UserDetails {
   @JsonIgnore
   private String password;
 
+  private int tokenVersion;
+
+  private int roleMask;
+
   private Collection<? extends GrantedAuthority> authorities;
 
+  //shared immutable authority lists for every combination of roles, indexed by role mask
+  private static final List<List<GrantedAuthority>> AUTHORITIES_BY_MASK = buildAuthorities();
+
+  private static List<List<GrantedAuthority>> buildAuthorities() {
+    UserRoleType[] roles = UserRoleType.values();
+    GrantedAuthority[] interned = new GrantedAuthority[roles.length];
+    for (int i = 0; i < roles.length; i++) {
+      interned[i] = new SimpleGrantedAuthority(roles[i].name());
+    }
+
+    List<List<GrantedAuthority>> authorities = new ArrayList<>(1 << roles.length);
+    for (int mask = 0; mask < 1 << roles.length; mask++) {
+      List<GrantedAuthority> list = new ArrayList<>();
+      for (int i = 0; i < roles.length; i++) {
+        if (roles[i].in(mask)) {
+          list.add(interned[i]);
+        }
+      }
+      authorities.add(List.copyOf(list));
+    }
+
+    return List.copyOf(authorities);
+  }
+
   public static UserDetailsImpl build(User user) {
-    List<GrantedAuthority> authorities = user.getUserRoles().stream()
-        .map(role -> new SimpleGrantedAuthority(role.getName().name()))
-        .collect(Collectors.toList());
+    int roleMask = user.getRoleMask();
 
     return new UserDetailsImpl(
         user.getId(), 
         user.getUsername(),
         user.getEmail(),
         user.getPassword(),
-        authorities);
+        user.getTokenVersion(),
+        roleMask,
+        AUTHORITIES_BY_MASK.get(roleMask));
+  }
+
+  //principal restored from token claims, has no password and never touches the database
+  public static UserDetailsImpl build(long id, String username, String email, int tokenVersion, int roleMask) {
+    return new UserDetailsImpl(id, username, email, null, tokenVersion, roleMask, AUTHORITIES_BY_MASK.get(roleMask));
+  }
+
+  public boolean hasRole(UserRoleType role) {
+    return role.in(roleMask);
   }
 
   @Override
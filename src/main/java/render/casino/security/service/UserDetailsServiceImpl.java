@@ -1,15 +1,26 @@
 package render.casino.security.service;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import render.casino.cache.CacheInvalidationBus;
 import render.casino.model.User;
 import render.casino.repository.UserRepository;
+import render.casino.security.jwt.JwtUtils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
@@ -17,10 +28,67 @@ public class UserDetailsServiceImpl implements UserDetailsService {
   @Autowired
   private UserRepository userRepository;
 
-  @Cacheable(value = "user_details", key = "#email")
+  @Autowired
+  private JwtUtils jwtUtils;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private CacheInvalidationBus cacheInvalidationBus;
+
+  @Value("${yukitale.app.userDetailsCacheSize:100000}")
+  private long cacheSize;
+
+  @Value("${yukitale.app.userDetailsExpireAfterAccessSec:900}")
+  private long expireAfterAccessSec;
+
+  //hot principals are reloaded in the background after this time and never expire in front of a request
+  @Value("${yukitale.app.userDetailsRefreshAfterWriteSec:300}")
+  private long refreshAfterWriteSec;
+
+  private ExecutorService refreshExecutor;
+
+  //loads are coalesced per email, concurrent misses for the same user wait for the single query in flight
+  private LoadingCache<String, UserDetailsImpl> userDetails;
+
+  @PostConstruct
+  public void init() {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setReadOnly(true);
+
+    this.refreshExecutor = Executors.newFixedThreadPool(2, runnable -> {
+      Thread thread = new Thread(runnable, "user-details-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    this.userDetails = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterAccess(expireAfterAccessSec, TimeUnit.SECONDS)
+            .refreshAfterWrite(refreshAfterWriteSec, TimeUnit.SECONDS)
+            .executor(refreshExecutor)
+            .recordStats()
+            .build(email -> transactionTemplate.execute(status -> loadUser(email)));
+
+    cacheInvalidationBus.subscribe("user_details", email -> userDetails.invalidate(email));
+    cacheInvalidationBus.subscribe("user_token_version", key -> {
+      String[] parts = key.split(":");
+      jwtUtils.revokePrincipalClaims(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    refreshExecutor.shutdownNow();
+  }
+
   @Override
-  @Transactional
   public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+    return userDetails.get(email);
+  }
+
+  private UserDetailsImpl loadUser(String email) {
     User user = userRepository.findByEmail(email).orElse(null);
     if (user == null) {
       return null;
@@ -29,7 +97,20 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     return UserDetailsImpl.build(user);
   }
 
-  @CacheEvict(value = "user_details", key = "#email")
+  public CacheStats getCacheStats() {
+    return userDetails.stats();
+  }
+
   public void removeCache(String email) {
+    userDetails.invalidate(email);
+    cacheInvalidationBus.publish("user_details", email);
+  }
+
+  //call after changing the roles of the user and before saving it, tokens issued earlier stop carrying a trusted principal
+  public void invalidateTokens(User user) {
+    user.setTokenVersion(user.getTokenVersion() + 1);
+    jwtUtils.revokePrincipalClaims(user.getId(), user.getTokenVersion());
+    cacheInvalidationBus.publish("user_token_version", user.getId() + ":" + user.getTokenVersion());
+    removeCache(user.getEmail());
   }
 }
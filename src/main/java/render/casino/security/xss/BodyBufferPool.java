@@ -0,0 +1,31 @@
+package render.casino.security.xss;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of fixed-size buffers for sanitized request bodies. Bodies that outgrow a pooled buffer are moved to
+ * a plain array and the pooled one is returned right away.
+ */
+@UtilityClass
+public class BodyBufferPool {
+
+    public final int BUFFER_SIZE = 16 * 1024;
+
+    private final int MAX_POOLED = 256;
+
+    private final BlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    public byte[] acquire() {
+        byte[] buffer = POOL.poll();
+        return buffer == null ? new byte[BUFFER_SIZE] : buffer;
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == BUFFER_SIZE) {
+            POOL.offer(buffer);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package render.casino.security.xss;
+
+import com.fasterxml.jackson.core.*;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.UnaryOperator;
+
+/**
+ * Streams a JSON document token by token from the parser into the generator, sanitizing only string values (and
+ * field names when asked). Structure, numbers and escapes are copied as they are, and nothing but the current token
+ * is held in memory.
+ */
+@UtilityClass
+public class JsonSanitizer {
+
+    private final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public void sanitize(InputStream in, OutputStream out, boolean fieldNames, UnaryOperator<String> sanitizer) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                switch (token) {
+                    case FIELD_NAME -> generator.writeFieldName(fieldNames ? sanitizer.apply(parser.getCurrentName()) : parser.getCurrentName());
+                    case VALUE_STRING -> generator.writeString(sanitizer.apply(parser.getText()));
+                    //keep the literal so that 0.10 or 1e3 reach the controller unchanged
+                    case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> generator.writeNumber(parser.getText());
+                    default -> generator.copyCurrentEvent(parser);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package render.casino.security.xss;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails with {@link BodyTooLargeException} as soon as more than {@code limit} bytes are read from the stream.
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long count;
+
+    public LimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(long read) throws BodyTooLargeException {
+        count += read;
+        if (count > limit) {
+            throw new BodyTooLargeException(limit);
+        }
+    }
+
+    public static class BodyTooLargeException extends IOException {
+
+        public BodyTooLargeException(long limit) {
+            super("Request body exceeds " + limit + " bytes");
+        }
+    }
+}
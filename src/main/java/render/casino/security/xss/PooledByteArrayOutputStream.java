@@ -0,0 +1,52 @@
+package render.casino.security.xss;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Growable output buffer that starts on a {@link BodyBufferPool} buffer; {@link #release()} returns it to the pool.
+ */
+public class PooledByteArrayOutputStream extends OutputStream {
+
+    private byte[] buffer = BodyBufferPool.acquire();
+    private int size;
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(size + 1);
+        buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        ensureCapacity(size + len);
+        System.arraycopy(b, off, buffer, size, len);
+        size += len;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= buffer.length) {
+            return;
+        }
+
+        byte[] grown = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        BodyBufferPool.release(buffer);
+        buffer = grown;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void release() {
+        BodyBufferPool.release(buffer);
+        buffer = null;
+        size = 0;
+    }
+}
@@ -1,46 +1,74 @@
 package render.casino.security.xss;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
+import java.util.stream.Stream;
 
 @Component
-@Order(Ordered.HIGHEST_PRECEDENCE)
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
 public class XSSFilter implements Filter {
 
-    private static final List<String> EXCLUSION_FILTERS = Arrays.asList(
-            "/api/admin-panel/settings/email",
-            "/api/admin-panel/settings/presets",
-            "/api/admin-panel/settings/legals",
-            "/api/admin-panel/settings/errors",
-            "/api/admin-panel/user-edit/errors",
-            "/api/admin-panel/user-edit/alert",
-            "/api/supporter-panel/settings/presets",
-            "/api/supporter-panel/user-edit/alert",
-            "/api/supporter-panel/user-edit/errors",
-            "/api/worker-panel/settings/legals",
-            "/api/worker-panel/settings/presets",
-            "/api/worker-panel/settings/errors",
-            "/api/worker-panel/user-edit/errors",
-            "/api/worker-panel/user-edit/alert"
-    );
-
-
-    private static boolean isExclusionUrl(String url) {
-        return EXCLUSION_FILTERS.contains(url.toLowerCase().split("\\?")[0]);
+    private static final Logger LOGGER = LoggerFactory.getLogger(XSSFilter.class);
+
+    //routes whose bodies carry trusted panel markup, extended or overridden by yukitale.app.xssRoutes
+    private static final String[] DEFAULT_ROUTES = {
+            "/api/admin-panel/settings/email=NONE",
+            "/api/admin-panel/settings/presets=NONE",
+            "/api/admin-panel/settings/legals=NONE",
+            "/api/admin-panel/settings/errors=NONE",
+            "/api/admin-panel/user-edit/errors=NONE",
+            "/api/admin-panel/user-edit/alert=NONE",
+            "/api/supporter-panel/settings/presets=NONE",
+            "/api/supporter-panel/user-edit/alert=NONE",
+            "/api/supporter-panel/user-edit/errors=NONE",
+            "/api/worker-panel/settings/legals=NONE",
+            "/api/worker-panel/settings/presets=NONE",
+            "/api/worker-panel/settings/errors=NONE",
+            "/api/worker-panel/user-edit/errors=NONE",
+            "/api/worker-panel/user-edit/alert=NONE"
+    };
+
+    @Value("${yukitale.app.xssDefaultMode:JSON}")
+    private XSSMode defaultMode;
+
+    @Value("${yukitale.app.xssRoutes:}")
+    private String[] routes;
+
+    @Value("${yukitale.app.xssSanitizeFieldNames:false}")
+    private boolean sanitizeFieldNames;
+
+    @Value("${yukitale.app.xssMaxBodyBytes:1048576}")
+    private long maxBodyBytes;
+
+    private XSSRoutePolicy routePolicy;
+
+    @PostConstruct
+    public void init() {
+        String[] allRoutes = Stream.concat(Arrays.stream(DEFAULT_ROUTES), Arrays.stream(routes))
+                .filter(StringUtils::isNotBlank)
+                .toArray(String[]::new);
+        this.routePolicy = XSSRoutePolicy.compile(defaultMode, allRoutes);
     }
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-        if (isExclusionUrl(((HttpServletRequest) request).getRequestURI())) {
+        XSSMode mode = routePolicy.resolve(((HttpServletRequest) request).getRequestURI());
+        if (mode == XSSMode.NONE) {
             chain.doFilter(request, response);
             return;
         }
@@ -55,13 +83,76 @@ public class XSSFilter implements Filter {
         } else {
             XSSRequestWrapper wrappedRequest = new XSSRequestWrapper ((HttpServletRequest) request);
 
-            String body = IOUtils.toString(wrappedRequest.getReader());
-            if (!body.isBlank()) {
-                body = XSSUtils.stripXSS(body);
-                wrappedRequest.resetInputStream(body.getBytes());
+            boolean json = StringUtils.isNotBlank(enctype) && enctype.toLowerCase().contains("json");
+            if (json && (mode == XSSMode.JSON || mode == XSSMode.SANITIZE_HTML)) {
+                if (request.getContentLengthLong() > maxBodyBytes) {
+                    ((HttpServletResponse) response).sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                    return;
+                }
+
+                PooledByteArrayOutputStream sanitized = new PooledByteArrayOutputStream();
+                try {
+                    JsonSanitizer.sanitize(new LimitedInputStream(request.getInputStream(), maxBodyBytes), sanitized, sanitizeFieldNames,
+                            mode == XSSMode.SANITIZE_HTML ? XSSUtils::sanitize : XSSUtils::stripXSSValue);
+                } catch (LimitedInputStream.BodyTooLargeException ex) {
+                    sanitized.release();
+                    ((HttpServletResponse) response).sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                    return;
+                } catch (JsonProcessingException ex) {
+                    sanitized.release();
+                    ((HttpServletResponse) response).sendError(HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+
+                wrappedRequest.resetInputStream(sanitized);
+            } else {
+                String body = IOUtils.toString(wrappedRequest.getReader());
+                if (!body.isBlank()) {
+                    body = mode == XSSMode.SANITIZE_HTML ? XSSUtils.sanitize(body) : XSSUtils.stripXSS(body);
+                    wrappedRequest.resetInputStream(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            try {
+                chain.doFilter(wrappedRequest, response);
+            } finally {
+                LOGGER.debug("{} sanitized {} values", wrappedRequest.getRequestURI(), wrappedRequest.getSanitizationCount());
+
+                //an async request still reads the body after the filter returns, release it when the request completes
+                if (wrappedRequest.isAsyncStarted()) {
+                    wrappedRequest.getAsyncContext().addListener(new ReleaseBodyListener(wrappedRequest));
+                } else {
+                    wrappedRequest.release();
+                }
             }
+        }
+    }
+
+    private static class ReleaseBodyListener implements AsyncListener {
+
+        private final XSSRequestWrapper request;
+
+        private ReleaseBodyListener(XSSRequestWrapper request) {
+            this.request = request;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            request.release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            request.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
 
-            chain.doFilter(wrappedRequest, response);
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
         }
     }
 }
\ No newline at end of file
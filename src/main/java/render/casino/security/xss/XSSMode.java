@@ -0,0 +1,13 @@
+package render.casino.security.xss;
+
+public enum XSSMode {
+
+    //request is passed through untouched
+    NONE,
+    //headers, parameters and the raw body go through XSSUtils.stripXSS
+    STRIP,
+    //like STRIP, but the body keeps the markup allowed by XSSUtils.sanitize (JSON bodies are sanitized per string value)
+    SANITIZE_HTML,
+    //JSON bodies are stripped per string value, other bodies fall back to STRIP
+    JSON;
+}
@@ -4,111 +4,234 @@ import jakarta.servlet.ReadListener;
 import jakarta.servlet.ServletInputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletRequestWrapper;
-import org.apache.commons.io.Charsets;
 import org.apache.commons.io.IOUtils;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Enumeration;
-import java.util.List;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 public class XSSRequestWrapper extends HttpServletRequestWrapper {
 
     private byte[] rawData;
+    private int rawLength;
+    private PooledByteArrayOutputStream pooledData;
     private HttpServletRequest request;
-    private ResettableServletInputStream servletStream;
+    private BodyServletInputStream servletStream;
 
     public XSSRequestWrapper(HttpServletRequest request) {
         super(request);
         this.request = request;
-        this.servletStream = new ResettableServletInputStream();
+        this.servletStream = new BodyServletInputStream();
     }
 
     public void resetInputStream(byte[] newRawData) {
+        release();
+        resetInputStream(newRawData, newRawData.length);
+    }
+
+    //the wrapper owns the buffer from now on and returns it to the pool on release()
+    public void resetInputStream(PooledByteArrayOutputStream newRawData) {
+        release();
+        pooledData = newRawData;
+        resetInputStream(newRawData.getBuffer(), newRawData.size());
+    }
+
+    private void resetInputStream(byte[] newRawData, int length) {
         rawData = newRawData;
-        servletStream.stream = new ByteArrayInputStream(newRawData);
+        rawLength = length;
+        servletStream.position = 0;
     }
 
-    @Override
-    public ServletInputStream getInputStream() throws IOException {
+    public void release() {
+        if (pooledData != null) {
+            //the buffer goes back to the pool and may be handed to another request, never read it again
+            rawData = new byte[0];
+            rawLength = 0;
+            pooledData.release();
+            pooledData = null;
+        }
+    }
+
+    private void readRawData() throws IOException {
         if (rawData == null) {
-            rawData = IOUtils.toByteArray(this.request.getReader(), Charsets.UTF_8);
-            servletStream.stream = new ByteArrayInputStream(rawData);
+            resetInputStream(IOUtils.toByteArray(this.request.getInputStream()));
         }
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        readRawData();
         return servletStream;
     }
 
     @Override
     public BufferedReader getReader() throws IOException {
-        if (rawData == null) {
-            rawData = IOUtils.toByteArray(this.request.getReader(), Charsets.UTF_8);
-            servletStream.stream = new ByteArrayInputStream(rawData);
-        }
-        return new BufferedReader(new InputStreamReader(servletStream));
+        readRawData();
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        return new BufferedReader(new InputStreamReader(servletStream, charset));
+    }
+
+    @Override
+    public int getContentLength() {
+        return rawData == null ? super.getContentLength() : rawLength;
     }
 
-    private class ResettableServletInputStream extends ServletInputStream {
+    @Override
+    public long getContentLengthLong() {
+        return rawData == null ? super.getContentLengthLong() : rawLength;
+    }
+
+    //the whole body is already in memory, so it is always ready and a read listener is served right away
+    private class BodyServletInputStream extends ServletInputStream {
 
-        private InputStream stream;
+        private int position;
+        private ReadListener readListener;
 
         @Override
-        public int read() throws IOException {
-            return stream.read();
+        public int read() {
+            return position < rawLength ? rawData[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= rawLength) {
+                return -1;
+            }
+
+            int read = Math.min(len, rawLength - position);
+            System.arraycopy(rawData, position, b, off, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, rawLength - position));
+            position += (int) skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return rawLength - position;
         }
 
         @Override
         public boolean isFinished() {
-            return false;
+            return position >= rawLength;
         }
 
         @Override
         public boolean isReady() {
-            return false;
+            return true;
         }
 
         @Override
         public void setReadListener(ReadListener readListener) {
+            Objects.requireNonNull(readListener, "readListener");
+            if (this.readListener != null) {
+                throw new IllegalStateException("ReadListener is already set");
+            }
+            if (!isAsyncStarted()) {
+                throw new IllegalStateException("ReadListener requires async processing");
+            }
+
+            this.readListener = readListener;
+            getAsyncContext().start(() -> {
+                try {
+                    if (!isFinished()) {
+                        readListener.onDataAvailable();
+                    }
+                    if (isFinished()) {
+                        readListener.onAllDataRead();
+                    }
+                } catch (Throwable throwable) {
+                    readListener.onError(throwable);
+                }
+            });
         }
     }
 
+    //memoized per request: header/parameter name -> sanitized values and raw value -> sanitized value
+    private final Map<String, String[]> parameterValues = new HashMap<>();
+    private final Map<String, List<String>> headerValues = new HashMap<>();
+    private final Map<String, String> sanitizedValues = new HashMap<>();
+    private int sanitizationCount;
+
+    //number of values that actually went through XSSUtils.stripXSS for this request
+    public int getSanitizationCount() {
+        return sanitizationCount;
+    }
+
+    private String stripXSS(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String sanitized = sanitizedValues.get(value);
+        if (sanitized == null) {
+            sanitized = XSSUtils.stripXSS(value);
+            sanitizationCount++;
+            sanitizedValues.put(value, sanitized);
+        }
+        return sanitized;
+    }
+
     @Override
     public String[] getParameterValues(String parameter) {
-        String[] values = super.getParameterValues(parameter);
-        if (values == null) {
-            return values;
-        }
-        int count = values.length;
-        String[] encodedValues = new String[count];
-        for (int i = 0; i < count; i++) {
-            encodedValues[i] = XSSUtils.stripXSS(values[i]);
+        String[] encodedValues = parameterValues.get(parameter);
+        if (encodedValues == null) {
+            String[] values = super.getParameterValues(parameter);
+            if (values == null) {
+                return null;
+            }
+            int count = values.length;
+            encodedValues = new String[count];
+            for (int i = 0; i < count; i++) {
+                encodedValues[i] = stripXSS(values[i]);
+            }
+            parameterValues.put(parameter, encodedValues);
         }
-        return encodedValues;
+        return encodedValues.clone();
     }
 
     @Override
     public String getParameter(String parameter) {
         String value = super.getParameter(parameter);
-        return XSSUtils.stripXSS(value);
+        return stripXSS(value);
     }
 
     @Override
     public String getHeader(String name) {
         String value = super.getHeader(name);
-        return XSSUtils.stripXSS(value);
+        return stripXSS(value);
     }
 
     @Override
     public Enumeration<String> getHeaders(String name) {
-        List<String> result = new ArrayList<>();
-        Enumeration<String> headers = super.getHeaders(name);
-        while (headers.hasMoreElements()) {
-            String header = headers.nextElement();
-            String[] tokens = header.split(",");
-            for (String token : tokens) {
-                result.add(XSSUtils.stripXSS(token));
+        String key = name.toLowerCase();
+        List<String> result = headerValues.get(key);
+        if (result == null) {
+            result = new ArrayList<>();
+            Enumeration<String> headers = super.getHeaders(name);
+            while (headers.hasMoreElements()) {
+                String header = headers.nextElement();
+                int start = 0;
+                int comma;
+                while ((comma = header.indexOf(',', start)) != -1) {
+                    result.add(stripXSS(header.substring(start, comma)));
+                    start = comma + 1;
+                }
+                result.add(stripXSS(start == 0 ? header : header.substring(start)));
             }
+            headerValues.put(key, result);
         }
         return Collections.enumeration(result);
     }
-}
\ No newline at end of file
+}
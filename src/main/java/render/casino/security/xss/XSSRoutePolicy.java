@@ -0,0 +1,108 @@
+package render.casino.security.xss;
+
+import java.util.Arrays;
+
+/**
+ * Maps request paths to {@link XSSMode}s. Patterns are either exact paths ({@code /api/auth/login}) or path prefixes
+ * ({@code /api/admin-panel/**}); an exact match wins over a prefix and a longer prefix over a shorter one.
+ * <p>
+ * The patterns are compiled into a case-insensitive character trie, a lookup walks the request URI once and
+ * allocates nothing.
+ */
+public class XSSRoutePolicy {
+
+    private final Node root = new Node();
+
+    private final XSSMode defaultMode;
+
+    public XSSRoutePolicy(XSSMode defaultMode) {
+        this.defaultMode = defaultMode;
+    }
+
+    //accepts "pattern=MODE" entries, later entries override earlier ones for the same pattern
+    public static XSSRoutePolicy compile(XSSMode defaultMode, String... routes) {
+        XSSRoutePolicy policy = new XSSRoutePolicy(defaultMode);
+        for (String route : routes) {
+            int separator = route.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid XSS route, expected pattern=MODE: " + route);
+            }
+            policy.add(route.substring(0, separator).trim(), XSSMode.valueOf(route.substring(separator + 1).trim().toUpperCase()));
+        }
+        return policy;
+    }
+
+    public void add(String pattern, XSSMode mode) {
+        boolean prefix = pattern.endsWith("/**");
+        String path = prefix ? pattern.substring(0, pattern.length() - 3) : pattern;
+
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.getOrCreate(lower(path.charAt(i)));
+        }
+
+        if (prefix) {
+            node.prefix = mode;
+        } else {
+            node.exact = mode;
+        }
+    }
+
+    public XSSMode resolve(String requestURI) {
+        XSSMode match = defaultMode;
+        Node node = root;
+        for (int i = 0, length = requestURI.length(); i < length; i++) {
+            char c = lower(requestURI.charAt(i));
+            if (c == '?' || c == ';') {
+                break;
+            }
+            if (c == '/' && node.prefix != null) {
+                match = node.prefix;
+            }
+
+            node = node.get(c);
+            if (node == null) {
+                return match;
+            }
+        }
+
+        if (node.exact != null) {
+            return node.exact;
+        }
+        return node.prefix != null ? node.prefix : match;
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+    }
+
+    private static class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private XSSMode exact;
+        private XSSMode prefix;
+
+        private Node get(char c) {
+            char[] keys = this.keys;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node getOrCreate(char c) {
+            Node child = get(c);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
@@ -13,36 +13,104 @@ public class XSSUtils {
     //todo: maybe this sanitize
     //todo: в password sanitize + stripXss
 
+    private final String NEWLINE_PLACEHOLDER = "[NEW_LINE]";
+
+    //policies are immutable and thread-safe, build them once
+    private final PolicyFactory HTML_POLICY = new HtmlPolicyBuilder()
+            .allowStandardUrlProtocols()
+            .allowStyling()
+            .allowCommonBlockElements()
+            .allowCommonInlineFormattingElements()
+            .allowAttributes("style").globally()
+            .allowElements("a")
+            .allowAttributes("href").onElements("a")
+            .allowAttributes("class").onElements("a")
+            .toFactory();
+
+    private final Safelist STRIP_ALL = Safelist.none();
+
+    //ascii characters that ESAPI canonicalization (entities, percent and backslash escapes) or Jsoup escaping would change
+    private final boolean[] UNSAFE_ASCII = unsafeAscii();
+
+    private boolean[] unsafeAscii() {
+        boolean[] unsafe = new boolean[128];
+        for (int c = 0; c < 0x21; c++) {
+            unsafe[c] = true;
+        }
+        unsafe[0x7F] = true;
+        for (char c : new char[] {'<', '>', '&', '%', '\\'}) {
+            unsafe[c] = true;
+        }
+        return unsafe;
+    }
+
     public String sanitize(String input) {
-        PolicyFactory policyFactory = new HtmlPolicyBuilder()
-                .allowStandardUrlProtocols()
-                .allowStyling()
-                .allowCommonBlockElements()
-                .allowCommonInlineFormattingElements()
-                .allowAttributes("style").globally()
-                .allowElements("a")
-                .allowAttributes("href").onElements("a")
-                .allowAttributes("class").onElements("a")
-                .toFactory();
-        return policyFactory.sanitize(input);
+        return HTML_POLICY.sanitize(input);
     }
 
     public String stripXSS(String value) {
+        return strip(value, "\\n");
+    }
+
+    //for decoded values (e.g. JSON strings) where a line break is a real newline character instead of an escape
+    public String stripXSSValue(String value) {
+        return strip(value, "\n");
+    }
+
+    private String strip(String value, String newline) {
         if (value == null) {
             return null;
         }
 
-        //todo: пофиксить костыль
-        String newlinePlaceholder = "[NEW_LINE]";
+        if (isClean(value)) {
+            return value;
+        }
 
-        value = value.replace("\\n", newlinePlaceholder);
+        //todo: пофиксить костыль
+        value = value.replace(newline, NEWLINE_PLACEHOLDER);
 
         value = ESAPI.encoder()
                 .canonicalize(value)
-                .replaceAll("\0", "");
+                .replace("\0", "");
+
+        value = Jsoup.clean(value, STRIP_ALL);
 
-        value = Jsoup.clean(value, Safelist.none());
+        return value.replace(NEWLINE_PLACEHOLDER, newline);
+    }
+
+    /**
+     * Single pass over the value telling whether {@link #stripXSS(String)} would return it unchanged: no markup,
+     * entity, percent or backslash escapes, no control characters and no whitespace that Jsoup would normalize
+     * (leading, trailing, repeated or non-space whitespace).
+     */
+    public boolean isClean(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return true;
+        }
+        if (value.charAt(0) == ' ' || value.charAt(length - 1) == ' ') {
+            return false;
+        }
+
+        boolean placeholder = false;
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 128) {
+                if (c == ' ') {
+                    if (previous == ' ') {
+                        return false;
+                    }
+                } else if (UNSAFE_ASCII[c]) {
+                    return false;
+                }
+                placeholder |= c == '[';
+            } else if (c == '\u00A0' || c == '\u00AD' || c == '\u200B' || Character.isSpaceChar(c) || Character.isISOControl(c)) {
+                return false;
+            }
+            previous = c;
+        }
 
-        return value.replace(newlinePlaceholder, "\\n");
+        return !placeholder || !value.contains(NEWLINE_PLACEHOLDER);
     }
 }
@@ -0,0 +1,79 @@
+package render.casino.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import render.casino.model.User;
+import render.casino.payload.response.AdminUserRow;
+import render.casino.repository.UserRepository;
+import render.casino.util.GeoUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin user listings as {@link AdminUserRow}s, selected by projection queries without loading {@link User} entities.
+ * Geolocation is resolved once per distinct IP of the page instead of once per rendered row through
+ * {@link User#getGeolocation()}.
+ */
+@Service
+public class AdminUserService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    //pages with at least this many rows are looked up in parallel, 0 disables it
+    @Value("${yukitale.app.geoBatchParallelThreshold:256}")
+    private int geoBatchParallelThreshold;
+
+    public List<AdminUserRow> getLastActiveUsers(Pageable pageable) {
+        return enrichGeolocation(userRepository.findRowsByOrderByLastActivityDesc(pageable));
+    }
+
+    public List<AdminUserRow> getLastActiveUsers(int roleType, Pageable pageable) {
+        return enrichGeolocation(userRepository.findRowsByRoleTypeOrderByLastActivityDesc(roleType, pageable));
+    }
+
+    public List<AdminUserRow> getOnlineUsers(Pageable pageable) {
+        return enrichGeolocation(userRepository.findRowsByLastOnlineGreaterThanOrderByLastActivityDesc(onlineSince(), pageable));
+    }
+
+    public List<AdminUserRow> getOnlineUsers(int roleType, Pageable pageable) {
+        return enrichGeolocation(userRepository.findRowsByRoleTypeAndLastOnlineGreaterThanOrderByLastActivityDesc(roleType, onlineSince(), pageable));
+    }
+
+    public List<AdminUserRow> getOnlineUsers() {
+        return enrichGeolocation(userRepository.findRowsByLastOnlineGreaterThan(onlineSince()));
+    }
+
+    //for pages that already hold entities, the listings above never load them; support is lazy and may be read here
+    @Transactional(readOnly = true)
+    public List<AdminUserRow> toRows(List<User> users) {
+        List<AdminUserRow> rows = new ArrayList<>(users.size());
+        for (User user : users) {
+            rows.add(AdminUserRow.of(user));
+        }
+        return enrichGeolocation(rows);
+    }
+
+    public List<AdminUserRow> enrichGeolocation(List<AdminUserRow> rows) {
+        List<String> ips = new ArrayList<>(rows.size());
+        for (AdminUserRow row : rows) {
+            ips.add(row.getLastIp());
+        }
+
+        boolean parallel = geoBatchParallelThreshold > 0 && rows.size() >= geoBatchParallelThreshold;
+        Map<String, GeoUtil.GeoData> geolocations = GeoUtil.getGeo(ips, parallel);
+        for (AdminUserRow row : rows) {
+            row.setGeolocation(geolocations.getOrDefault(row.getLastIp(), GeoUtil.GeoData.UNKNOWN));
+        }
+        return rows;
+    }
+
+    private long onlineSince() {
+        return System.currentTimeMillis() - User.ONLINE_TIMEOUT_MS;
+    }
+}
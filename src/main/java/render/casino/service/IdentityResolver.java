@@ -0,0 +1,72 @@
+package render.casino.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import render.casino.model.User;
+import render.casino.repository.UserRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves a login identifier, which may be either an email or a username, with one indexed query.
+ * <p>
+ * Identifiers that matched nobody are remembered for a short time, so repeated attempts against accounts that do
+ * not exist (credential stuffing) are answered from memory instead of reaching the database.
+ */
+@Service
+public class IdentityResolver {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${yukitale.app.unknownIdentityTtlMs:60000}")
+    private long unknownIdentityTtlMs;
+
+    @Value("${yukitale.app.unknownIdentityCacheSize:100000}")
+    private long unknownIdentityCacheSize;
+
+    private Cache<String, Boolean> unknownIdentities;
+
+    @PostConstruct
+    public void init() {
+        this.unknownIdentities = Caffeine.newBuilder()
+                .maximumSize(unknownIdentityCacheSize)
+                .expireAfterWrite(unknownIdentityTtlMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public User resolve(String identifier) {
+        String email = identifier.toLowerCase();
+        if (unknownIdentities.getIfPresent(email) != null) {
+            return null;
+        }
+
+        User user = null;
+        for (User candidate : userRepository.findAllByEmailOrUsername(email, identifier)) {
+            //an email match wins over another account that uses the same string as its username
+            if (email.equalsIgnoreCase(candidate.getEmail())) {
+                return candidate;
+            }
+            user = candidate;
+        }
+
+        if (user == null) {
+            unknownIdentities.put(email, Boolean.TRUE);
+        }
+
+        return user;
+    }
+
+    //must be called when an account is registered or its email or username changes
+    public void forget(String... identifiers) {
+        for (String identifier : identifiers) {
+            if (identifier != null) {
+                unknownIdentities.invalidate(identifier.toLowerCase());
+            }
+        }
+    }
+}
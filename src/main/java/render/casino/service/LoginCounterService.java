@@ -0,0 +1,78 @@
+package render.casino.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind aggregator for {@code users.auth_count}.
+ * <p>
+ * Logins only bump an in-memory per-user counter, the collected deltas are written periodically as one batch of
+ * relative {@code auth_count = auth_count + ?} updates, so concurrent logins never overwrite each other and no
+ * {@link render.casino.model.User} row is loaded or saved for it.
+ */
+@Service
+public class LoginCounterService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoginCounterService.class);
+
+    private static final String UPDATE_AUTH_COUNT = "UPDATE users SET auth_count = auth_count + ? WHERE id = ?";
+
+    //updated and taken out only with atomic map operations, so an increment is either flushed or still pending
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void increment(long userId) {
+        add(userId, 1);
+    }
+
+    private void add(long userId, long delta) {
+        pending.merge(userId, delta, Long::sum);
+    }
+
+    @Scheduled(fixedDelayString = "${yukitale.app.loginCounterFlushMs:5000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        for (Long userId : pending.keySet()) {
+            //an increment after the removal starts a new entry for the next flush
+            Long delta = pending.remove(userId);
+            if (delta != null && delta != 0) {
+                batch.add(new Object[] {delta, userId});
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_AUTH_COUNT, batch);
+        } catch (DataAccessException ex) {
+            LOGGER.error("Cannot flush {} login counters: {}", batch.size(), ex.getMessage());
+            for (Object[] row : batch) {
+                add((Long) row[1], (Long) row[0]);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,61 @@
+package render.casino.service;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import render.casino.model.ReferrerDailyStats;
+import render.casino.model.UserStatsSnapshot;
+
+import java.sql.Date;
+
+//referrer_daily_stats: registrations, deposits count and deposits sum per registration day and referrer
+@Service
+public class ReferrerStatsUpdater extends StatsRollupUpdater<ReferrerDailyStats.Key> {
+
+    private static final String UPSERT = "INSERT INTO referrer_daily_stats (day, referrer, registrations, deposits_count, deposits_sum) VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE registrations = registrations + VALUES(registrations), " +
+            "deposits_count = deposits_count + VALUES(deposits_count), deposits_sum = deposits_sum + VALUES(deposits_sum)";
+
+    @Override
+    protected ReferrerDailyStats.Key key(UserStatsSnapshot snapshot) {
+        return snapshot.getRegisteredDay() == null ? null : new ReferrerDailyStats.Key(snapshot.getRegisteredDay(), snapshot.getReferrer());
+    }
+
+    @Override
+    protected void count(UserStatsSnapshot snapshot, long sign, long[] counters) {
+        counters[0] += sign;
+        counters[1] += sign * snapshot.getDepositsCount();
+        counters[2] += sign * snapshot.getDeposits();
+    }
+
+    @Override
+    protected int counterCount() {
+        return 3;
+    }
+
+    @Override
+    protected String upsertSql() {
+        return UPSERT;
+    }
+
+    @Override
+    protected Object[] row(ReferrerDailyStats.Key key, long[] counters) {
+        return new Object[] {Date.valueOf(key.getDay()), key.getReferrer(), counters[0], counters[1], counters[2]};
+    }
+
+    @Override
+    protected String tableName() {
+        return "referrer_daily_stats";
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${yukitale.app.referrerStatsFlushMs:5000}")
+    public void flush() {
+        super.flush();
+    }
+
+    @Override
+    @Scheduled(cron = "${yukitale.app.referrerStatsRebuildCron:-}")
+    public void rebuild() {
+        super.rebuild();
+    }
+}
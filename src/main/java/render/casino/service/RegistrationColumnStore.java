@@ -0,0 +1,403 @@
+package render.casino.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import render.casino.model.UserStatsSink;
+import render.casino.model.UserStatsSnapshot;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory columnar copy of the registration attributes of every user, for ad-hoc {@link RegistrationQuery}s.
+ * <p>
+ * Each user is one row: the string attributes are dictionary encoded into {@code int} columns, the registration day,
+ * deposit count and deposit sum are primitive columns. A query is a scan over the columns split into chunks that run
+ * in parallel on the common pool, each chunk adds up its own per-group counters and the chunks are merged at the end.
+ * <p>
+ * The store is loaded in the background once the application is ready and then kept in sync by
+ * {@link render.casino.model.UserStatsListener}. Commits that leave the stored attributes as they were are skipped. The
+ * snapshots of concurrent commits can arrive in any order, so a change only names the user, and the changed users are
+ * read again in batches by a scheduled refresh off the request thread; refreshes run one at a time, the last read of
+ * a user sees its latest commit. Users that change during the load are read again after it, a failed load is started
+ * over after a growing delay. Writers and queries are separated by
+ * a read-write lock, removed rows are filled with the last one to keep the columns dense.
+ * <p>
+ * Disabled unless {@code yukitale.app.registrationColumnStore=true}.
+ */
+@Service
+@ConditionalOnProperty(name = "yukitale.app.registrationColumnStore", havingValue = "true")
+public class RegistrationColumnStore implements UserStatsSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistrationColumnStore.class);
+
+    private static final String LOAD_USERS = UserStatsSnapshot.SELECT + " WHERE id IN (%s)";
+
+    private static final int REFRESH_BATCH = 500;
+
+    //COUNTRY .. PLATFORM of RegistrationQuery.Dimension
+    private static final int STRING_COLUMNS = 5;
+
+    //rows without a registration date, they are skipped by day filters and by DAY groups
+    private static final int NO_DAY = Integer.MIN_VALUE;
+
+    private static final int MIN_CHUNK_ROWS = 16384;
+
+    private static final long LOAD_RETRY_MIN_MS = 10_000;
+    private static final long LOAD_RETRY_MAX_MS = 600_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Dictionary[] dictionaries = new Dictionary[STRING_COLUMNS];
+    private final int[][] codes = new int[STRING_COLUMNS][];
+    private long[] ids = new long[0];
+    private int[] days = new int[0];
+    private long[] depositsCounts = new long[0];
+    private long[] deposits = new long[0];
+    private int size;
+
+    private int minDay = Integer.MAX_VALUE;
+    private int maxDay = Integer.MIN_VALUE;
+
+    //user id -> row
+    private final Map<Long, Integer> rows = new HashMap<>();
+
+    //users changed since they were last read, guarded by itself; the ones changed while loading are read after it
+    private final Set<Long> changed = new HashSet<>();
+
+    private volatile boolean loaded;
+
+    public RegistrationColumnStore() {
+        for (int i = 0; i < STRING_COLUMNS; i++) {
+            dictionaries[i] = new Dictionary();
+            codes[i] = new int[0];
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startLoading() {
+        Thread thread = new Thread(this::load, "registration-column-store");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void load() {
+        long delay = LOAD_RETRY_MIN_MS;
+        while (!tryLoad()) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            delay = Math.min(delay * 2, LOAD_RETRY_MAX_MS);
+        }
+    }
+
+    boolean tryLoad() {
+        long start = System.currentTimeMillis();
+        try {
+            readAll(snapshot -> {
+                lock.writeLock().lock();
+                try {
+                    upsert(snapshot);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        } catch (Exception ex) {
+            LOGGER.error("Cannot load registration column store, retrying: {}", ex.getMessage());
+            //the next attempt reads every user again and sees the commits made before it starts
+            lock.writeLock().lock();
+            try {
+                rows.clear();
+                size = 0;
+                minDay = Integer.MAX_VALUE;
+                maxDay = Integer.MIN_VALUE;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            synchronized (changed) {
+                changed.clear();
+            }
+            return false;
+        }
+
+        loaded = true;
+        //the load may have read them before they changed
+        refreshChanged();
+        LOGGER.info("Registration column store loaded {} users in {} ms", size, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    @Override
+    public void apply(UserStatsSnapshot before, UserStatsSnapshot after) {
+        //most commits only touch columns the store does not keep, like the last activity
+        if (before != null && before.equals(after)) {
+            return;
+        }
+        synchronized (changed) {
+            changed.add(after != null ? after.getId() : before.getId());
+        }
+    }
+
+    //stores the committed state of the changed users, or removes the rows of the ones that are gone
+    @Scheduled(fixedDelayString = "${yukitale.app.registrationColumnStoreRefreshMs:1000}")
+    public synchronized void refreshChanged() {
+        if (!loaded) {
+            return;
+        }
+        List<Long> batch;
+        synchronized (changed) {
+            if (changed.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(changed);
+            changed.clear();
+        }
+
+        for (int from = 0; from < batch.size(); from += REFRESH_BATCH) {
+            List<Long> ids = batch.subList(from, Math.min(batch.size(), from + REFRESH_BATCH));
+            Map<Long, UserStatsSnapshot> current;
+            try {
+                current = read(ids);
+            } catch (DataAccessException ex) {
+                LOGGER.error("Cannot refresh {} users in registration column store: {}", batch.size() - from, ex.getMessage());
+                synchronized (changed) {
+                    changed.addAll(batch.subList(from, batch.size()));
+                }
+                return;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (long id : ids) {
+                    UserStatsSnapshot snapshot = current.get(id);
+                    if (snapshot == null) {
+                        remove(id);
+                    } else {
+                        upsert(snapshot);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    void readAll(Consumer<UserStatsSnapshot> consumer) {
+        jdbcTemplate.query(UserStatsSnapshot.SELECT, resultSet -> {
+            consumer.accept(UserStatsSnapshot.of(resultSet));
+        });
+    }
+
+    //by id, users that are gone are missing
+    Map<Long, UserStatsSnapshot> read(List<Long> ids) {
+        String sql = String.format(LOAD_USERS, String.join(",", Collections.nCopies(ids.size(), "?")));
+        Map<Long, UserStatsSnapshot> users = new HashMap<>();
+        for (UserStatsSnapshot user : jdbcTemplate.query(sql, (resultSet, rowNum) -> UserStatsSnapshot.of(resultSet), ids.toArray())) {
+            users.put(user.getId(), user);
+        }
+        return users;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<RegistrationGroup> query(RegistrationQuery query) {
+        lock.readLock().lock();
+        try {
+            return execute(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void upsert(UserStatsSnapshot snapshot) {
+        Integer row = rows.get(snapshot.getId());
+        if (row == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            rows.put(snapshot.getId(), row);
+        }
+
+        int day = snapshot.getRegisteredDay() == null ? NO_DAY : (int) snapshot.getRegisteredDay().toEpochDay();
+        if (day != NO_DAY) {
+            minDay = Math.min(minDay, day);
+            maxDay = Math.max(maxDay, day);
+        }
+
+        ids[row] = snapshot.getId();
+        days[row] = day;
+        depositsCounts[row] = snapshot.getDepositsCount();
+        deposits[row] = snapshot.getDeposits();
+        codes[RegistrationQuery.Dimension.COUNTRY.ordinal()][row] = dictionaries[RegistrationQuery.Dimension.COUNTRY.ordinal()].encode(snapshot.getCountryCode());
+        codes[RegistrationQuery.Dimension.REFERRER.ordinal()][row] = dictionaries[RegistrationQuery.Dimension.REFERRER.ordinal()].encode(snapshot.getReferrer());
+        codes[RegistrationQuery.Dimension.PROMOCODE.ordinal()][row] = dictionaries[RegistrationQuery.Dimension.PROMOCODE.ordinal()].encode(snapshot.getPromocodeName());
+        codes[RegistrationQuery.Dimension.DOMAIN.ordinal()][row] = dictionaries[RegistrationQuery.Dimension.DOMAIN.ordinal()].encode(snapshot.getDomain());
+        codes[RegistrationQuery.Dimension.PLATFORM.ordinal()][row] = dictionaries[RegistrationQuery.Dimension.PLATFORM.ordinal()].encode(snapshot.getPlatform());
+    }
+
+    private void remove(long id) {
+        Integer row = rows.remove(id);
+        if (row == null) {
+            return;
+        }
+
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            days[row] = days[last];
+            depositsCounts[row] = depositsCounts[last];
+            deposits[row] = deposits[last];
+            for (int[] column : codes) {
+                column[row] = column[last];
+            }
+            rows.put(ids[row], row);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+
+        int length = Math.max(capacity, ids.length + (ids.length >> 1) + 16);
+        ids = Arrays.copyOf(ids, length);
+        days = Arrays.copyOf(days, length);
+        depositsCounts = Arrays.copyOf(depositsCounts, length);
+        deposits = Arrays.copyOf(deposits, length);
+        for (int i = 0; i < STRING_COLUMNS; i++) {
+            codes[i] = Arrays.copyOf(codes[i], length);
+        }
+    }
+
+    private List<RegistrationGroup> execute(RegistrationQuery query) {
+        int filterCount = query.getFilters().size();
+        int[] filterColumns = new int[filterCount];
+        int[] filterCodes = new int[filterCount];
+        int f = 0;
+        for (Map.Entry<RegistrationQuery.Dimension, String> filter : query.getFilters().entrySet()) {
+            int code = dictionaries[filter.getKey().ordinal()].find(filter.getValue());
+            if (code < 0) {
+                return Collections.emptyList();
+            }
+            filterColumns[f] = filter.getKey().ordinal();
+            filterCodes[f++] = code;
+        }
+
+        boolean byDay = query.getGroupBy() == RegistrationQuery.Dimension.DAY;
+        int groupColumn = byDay ? -1 : query.getGroupBy().ordinal();
+        if (size == 0 || (byDay && minDay > maxDay)) {
+            return Collections.emptyList();
+        }
+        int groupCount = byDay ? maxDay - minDay + 1 : dictionaries[groupColumn].size();
+
+        boolean dayFilter = query.getRegisteredFrom() != null || query.getRegisteredTo() != null;
+        int fromDay = query.getRegisteredFrom() == null ? Integer.MIN_VALUE + 1 : (int) query.getRegisteredFrom().toEpochDay();
+        int toDay = query.getRegisteredTo() == null ? Integer.MAX_VALUE : (int) query.getRegisteredTo().toEpochDay();
+        boolean depositorsOnly = query.isDepositorsOnly();
+
+        int chunkCount = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, size / MIN_CHUNK_ROWS));
+        int chunkSize = (size + chunkCount - 1) / chunkCount;
+
+        long[] totals = IntStream.range(0, chunkCount).parallel().mapToObj(chunk -> {
+            long[] counters = new long[groupCount * 3];
+            int end = Math.min(size, (chunk + 1) * chunkSize);
+            rows:
+            for (int row = chunk * chunkSize; row < end; row++) {
+                int day = days[row];
+                if ((dayFilter || byDay) && (day == NO_DAY || day < fromDay || day >= toDay)) {
+                    continue;
+                }
+                if (depositorsOnly && depositsCounts[row] == 0) {
+                    continue;
+                }
+                for (int i = 0; i < filterCount; i++) {
+                    if (codes[filterColumns[i]][row] != filterCodes[i]) {
+                        continue rows;
+                    }
+                }
+
+                int group = (byDay ? day - minDay : codes[groupColumn][row]) * 3;
+                counters[group]++;
+                counters[group + 1] += depositsCounts[row];
+                counters[group + 2] += deposits[row];
+            }
+            return counters;
+        }).reduce((a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        }).orElseGet(() -> new long[groupCount * 3]);
+
+        List<RegistrationGroup> groups = new ArrayList<>();
+        for (int group = 0; group < groupCount; group++) {
+            if (totals[group * 3] == 0) {
+                continue;
+            }
+            String key = byDay ? LocalDate.ofEpochDay(minDay + group).toString() : dictionaries[groupColumn].decode(group);
+            groups.add(new RegistrationGroup(key, totals[group * 3], totals[group * 3 + 1], totals[group * 3 + 2]));
+        }
+
+        RegistrationQuery.Metric metric = query.getOrderBy();
+        groups.sort(Comparator.comparingLong((RegistrationGroup group) -> group.get(metric)).reversed());
+        return groups.size() > query.getLimit() ? new ArrayList<>(groups.subList(0, query.getLimit())) : groups;
+    }
+
+    //codes are never reused, a value stays encoded after its last row is gone
+    private static class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        private int find(String value) {
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        private String decode(int code) {
+            return values.get(code);
+        }
+
+        private int size() {
+            return values.size();
+        }
+    }
+}
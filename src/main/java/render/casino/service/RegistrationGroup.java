@@ -0,0 +1,26 @@
+package render.casino.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//one group of a RegistrationQuery result, the key of a DAY group is the ISO date and deposits are minor units
+@AllArgsConstructor
+@Getter
+public class RegistrationGroup {
+
+    private final String key;
+    private final long registrations;
+    private final long depositsCount;
+    private final long depositsSum;
+
+    public long get(RegistrationQuery.Metric metric) {
+        switch (metric) {
+            case DEPOSITS_COUNT:
+                return depositsCount;
+            case DEPOSITS_SUM:
+                return depositsSum;
+            default:
+                return registrations;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package render.casino.service;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Filtered group-by over {@link RegistrationColumnStore}, e.g. the top 10 referrers by deposit sum of the users that
+ * registered in a month from one country:
+ * <pre>
+ * RegistrationQuery.groupBy(Dimension.REFERRER)
+ *         .where(Dimension.COUNTRY, "DE")
+ *         .registeredBetween(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 1))
+ *         .top(10, Metric.DEPOSITS_SUM)
+ * </pre>
+ */
+@Getter
+public class RegistrationQuery {
+
+    //the string dimensions come first, their ordinal is the column index in the store
+    public enum Dimension {
+        COUNTRY, REFERRER, PROMOCODE, DOMAIN, PLATFORM, DAY
+    }
+
+    public enum Metric {
+        REGISTRATIONS, DEPOSITS_COUNT, DEPOSITS_SUM
+    }
+
+    private final Dimension groupBy;
+    private final Map<Dimension, String> filters = new EnumMap<>(Dimension.class);
+    private LocalDate registeredFrom;
+    private LocalDate registeredTo;
+    private boolean depositorsOnly;
+    private Metric orderBy = Metric.REGISTRATIONS;
+    private int limit = Integer.MAX_VALUE;
+
+    private RegistrationQuery(Dimension groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public static RegistrationQuery groupBy(Dimension dimension) {
+        return new RegistrationQuery(dimension);
+    }
+
+    //exact match, a missing value is ''
+    public RegistrationQuery where(Dimension dimension, String value) {
+        if (dimension == Dimension.DAY) {
+            throw new IllegalArgumentException("Filter days with registeredBetween");
+        }
+        filters.put(dimension, value == null ? "" : value);
+        return this;
+    }
+
+    //from inclusive, to exclusive, either may be null
+    public RegistrationQuery registeredBetween(LocalDate from, LocalDate to) {
+        this.registeredFrom = from;
+        this.registeredTo = to;
+        return this;
+    }
+
+    public RegistrationQuery depositorsOnly() {
+        this.depositorsOnly = true;
+        return this;
+    }
+
+    //groups ordered by the metric, highest first, groups with no registrations are never returned
+    public RegistrationQuery top(int limit, Metric orderBy) {
+        this.limit = limit;
+        this.orderBy = orderBy;
+        return this;
+    }
+
+    public Map<Dimension, String> getFilters() {
+        return Collections.unmodifiableMap(filters);
+    }
+}
@@ -0,0 +1,59 @@
+package render.casino.service;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import render.casino.model.RegistrationDailyStats;
+import render.casino.model.UserStatsSnapshot;
+
+import java.sql.Date;
+
+//registration_daily_stats: registrations per registration day, country, promocode and domain
+@Service
+public class RegistrationStatsUpdater extends StatsRollupUpdater<RegistrationDailyStats.Key> {
+
+    private static final String UPSERT = "INSERT INTO registration_daily_stats (day, country_code, promocode_name, domain, registrations) VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE registrations = registrations + VALUES(registrations)";
+
+    @Override
+    protected RegistrationDailyStats.Key key(UserStatsSnapshot snapshot) {
+        return snapshot.getRegisteredDay() == null ? null : new RegistrationDailyStats.Key(snapshot.getRegisteredDay(),
+                snapshot.getCountryCode(), snapshot.getPromocodeName(), snapshot.getDomain());
+    }
+
+    @Override
+    protected void count(UserStatsSnapshot snapshot, long sign, long[] counters) {
+        counters[0] += sign;
+    }
+
+    @Override
+    protected int counterCount() {
+        return 1;
+    }
+
+    @Override
+    protected String upsertSql() {
+        return UPSERT;
+    }
+
+    @Override
+    protected Object[] row(RegistrationDailyStats.Key key, long[] counters) {
+        return new Object[] {Date.valueOf(key.getDay()), key.getCountryCode(), key.getPromocodeName(), key.getDomain(), counters[0]};
+    }
+
+    @Override
+    protected String tableName() {
+        return "registration_daily_stats";
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${yukitale.app.registrationStatsFlushMs:5000}")
+    public void flush() {
+        super.flush();
+    }
+
+    @Override
+    @Scheduled(cron = "${yukitale.app.registrationStatsRebuildCron:-}")
+    public void rebuild() {
+        super.rebuild();
+    }
+}
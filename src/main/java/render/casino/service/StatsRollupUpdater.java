@@ -0,0 +1,206 @@
+package render.casino.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import render.casino.model.UserStatsSink;
+import render.casino.model.UserStatsSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-behind maintenance of one statistics rollup table.
+ * <p>
+ * {@link render.casino.model.UserStatsListener} reports how a committed user change moves the counters, the deltas are
+ * summed per rollup key in memory and written by {@link #flush()} as one batch of relative upserts,
+ * so every node can apply its own deltas without coordinating with the others. An empty table is backfilled from
+ * {@code users} once the application has started, nothing is flushed before that. {@link #rebuild()} recounts the
+ * table from {@code users} and is scheduled by the subclasses to reconcile the drift the relative upserts can build up.
+ *
+ * @param <K> rollup key, its counters are the remaining columns of the row
+ */
+public abstract class StatsRollupUpdater<K> implements UserStatsSink {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private Map<K, long[]> pending = new HashMap<>();
+
+    //a delta flushed into the empty table would make it look backfilled
+    private volatile boolean started;
+    private volatile boolean backfilled;
+
+    //flushes, backfill and rebuilds write one at a time, apply only synchronizes on this
+    private final Object writeLock = new Object();
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    //key of the row the user is counted in, null if it is not counted
+    protected abstract K key(UserStatsSnapshot snapshot);
+
+    //adds sign times the user's contribution to the counters of its row
+    protected abstract void count(UserStatsSnapshot snapshot, long sign, long[] counters);
+
+    protected abstract int counterCount();
+
+    //upsert adding the counters to the row of the key, parameters as returned by row
+    protected abstract String upsertSql();
+
+    protected abstract Object[] row(K key, long[] counters);
+
+    protected abstract String tableName();
+
+    @Override
+    public synchronized void apply(UserStatsSnapshot before, UserStatsSnapshot after) {
+        if (before != null) {
+            add(pending, before, -1);
+        }
+        if (after != null) {
+            add(pending, after, 1);
+        }
+    }
+
+    private void add(Map<K, long[]> deltas, UserStatsSnapshot snapshot, long sign) {
+        K key = key(snapshot);
+        if (key != null) {
+            count(snapshot, sign, deltas.computeIfAbsent(key, k -> new long[counterCount()]));
+        }
+    }
+
+    private synchronized void merge(Map<K, long[]> deltas) {
+        for (Map.Entry<K, long[]> entry : deltas.entrySet()) {
+            long[] counters = pending.computeIfAbsent(entry.getKey(), k -> new long[counterCount()]);
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] += entry.getValue()[i];
+            }
+        }
+    }
+
+    public void flush() {
+        if (!backfilled) {
+            if (!started) {
+                return;
+            }
+            //retried until it succeeds, the deltas keep adding up meanwhile
+            backfill();
+            if (!backfilled) {
+                return;
+            }
+        }
+
+        synchronized (writeLock) {
+            Map<K, long[]> flushed;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                flushed = pending;
+                pending = new HashMap<>();
+            }
+
+            List<Object[]> batch = toRows(flushed);
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                jdbcTemplate.batchUpdate(upsertSql(), batch);
+            } catch (DataAccessException ex) {
+                logger.error("Cannot flush {} rollup rows: {}", batch.size(), ex.getMessage());
+                merge(flushed);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        started = true;
+        synchronized (writeLock) {
+            if (backfilled) {
+                return;
+            }
+            try {
+                if (jdbcTemplate.queryForList("SELECT 1 FROM " + tableName() + " LIMIT 1").isEmpty()) {
+                    rebuild();
+                }
+                backfilled = true;
+            } catch (RuntimeException ex) {
+                logger.error("Cannot backfill rollup: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replaces the table with the totals counted from {@code users} in one transaction.
+     * <p>
+     * The deltas pending when the scan starts belong to changes it already sees committed and are dropped, later ones
+     * stay pending. A change committed on another node or in between can still be counted twice until the next rebuild.
+     */
+    public void rebuild() {
+        synchronized (writeLock) {
+            Map<K, long[]> counted;
+            synchronized (this) {
+                counted = pending;
+                pending = new HashMap<>();
+            }
+
+            try {
+                Map<K, long[]> totals = new HashMap<>();
+                jdbcTemplate.query(UserStatsSnapshot.SELECT, resultSet -> {
+                    add(totals, UserStatsSnapshot.of(resultSet), 1);
+                });
+                List<Object[]> batch = toRows(totals);
+
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    jdbcTemplate.update("DELETE FROM " + tableName());
+                    if (!batch.isEmpty()) {
+                        jdbcTemplate.batchUpdate(upsertSql(), batch);
+                    }
+                });
+                logger.info("Rebuilt rollup with {} rows", batch.size());
+            } catch (RuntimeException ex) {
+                merge(counted);
+                throw ex;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private List<Object[]> toRows(Map<K, long[]> deltas) {
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        for (Map.Entry<K, long[]> entry : deltas.entrySet()) {
+            //an update that did not touch the aggregated columns adds and removes the same values
+            if (isZero(entry.getValue())) {
+                continue;
+            }
+            batch.add(row(entry.getKey(), entry.getValue()));
+        }
+        return batch;
+    }
+
+    private boolean isZero(long[] counters) {
+        for (long counter : counters) {
+            if (counter != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
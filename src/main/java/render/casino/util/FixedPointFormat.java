@@ -0,0 +1,143 @@
+package render.casino.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Locale independent replacement for {@code new DecimalFormat("#0.##...")}: at most {@code precision} fraction digits,
+ * no trailing zeros, no grouping, {@code '.'} as separator and the same rounding (HALF_EVEN, or FLOOR).
+ * <p>
+ * Instances are immutable and cached per precision and mode. Ordinary amounts are scaled by a precomputed power of ten
+ * and printed from a {@code long} into a per-thread {@link StringBuilder}; values too large for that, values too close
+ * to a rounding boundary to decide from the scaled double and very high precisions go through {@link BigDecimal}
+ * exactly like {@code DecimalFormat} does: the shortest decimal representation of the double is rounded, and a tie in
+ * it is decided by the exact binary value.
+ */
+public final class FixedPointFormat {
+
+    public static final int MAX_PRECISION = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_PRECISION + 1];
+
+    //the scaled value has to fit far inside the 53 bit mantissa for the fast path to decide the rounding
+    private static final double FAST_PATH_LIMIT = 1e12;
+    private static final double BOUNDARY_EPSILON = 1e-3;
+
+    private static final FixedPointFormat[] HALF_EVEN = new FixedPointFormat[MAX_PRECISION + 1];
+    private static final FixedPointFormat[] FLOOR = new FixedPointFormat[MAX_PRECISION + 1];
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+    static {
+        long power = 1;
+        for (int i = 0; i <= MAX_PRECISION; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+
+            HALF_EVEN[i] = new FixedPointFormat(i, RoundingMode.HALF_EVEN);
+            FLOOR[i] = new FixedPointFormat(i, RoundingMode.FLOOR);
+        }
+    }
+
+    private final int precision;
+    private final RoundingMode roundingMode;
+
+    private FixedPointFormat(int precision, RoundingMode roundingMode) {
+        this.precision = precision;
+        this.roundingMode = roundingMode;
+    }
+
+    public static FixedPointFormat of(int precision) {
+        return HALF_EVEN[clamp(precision)];
+    }
+
+    public static FixedPointFormat floor(int precision) {
+        return FLOOR[clamp(precision)];
+    }
+
+    public String format(double value) {
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        return append(builder, value).toString();
+    }
+
+    public StringBuilder append(StringBuilder builder, double value) {
+        if (Double.isNaN(value)) {
+            return builder.append("NaN");
+        }
+        if (Double.isInfinite(value)) {
+            return builder.append(value < 0 ? "-\u221E" : "\u221E");
+        }
+
+        //DecimalFormat keeps the sign of values that round to zero, "-0" included
+        boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+        double absolute = Math.abs(value);
+
+        double scaled = absolute * POWERS_OF_TEN[precision];
+        if (scaled < FAST_PATH_LIMIT) {
+            double floor = Math.floor(scaled);
+            double fraction = scaled - floor;
+            boolean decided = roundingMode == RoundingMode.FLOOR
+                    ? fraction > BOUNDARY_EPSILON && fraction < 1 - BOUNDARY_EPSILON
+                    : Math.abs(fraction - 0.5) > BOUNDARY_EPSILON;
+            if (decided) {
+                long units = (long) floor;
+                if (roundingMode == RoundingMode.FLOOR ? negative : fraction > 0.5) {
+                    units++;
+                }
+                return appendUnits(builder, negative, units);
+            }
+        }
+
+        return appendExact(builder, negative, value);
+    }
+
+    private StringBuilder appendUnits(StringBuilder builder, boolean negative, long units) {
+        if (negative) {
+            builder.append('-');
+        }
+
+        long unit = POWERS_OF_TEN[precision];
+        builder.append(units / unit);
+
+        long fraction = units % unit;
+        if (fraction == 0) {
+            return builder;
+        }
+
+        int digits = precision;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+
+        builder.append('.');
+        for (long power = POWERS_OF_TEN[digits - 1]; power > fraction; power /= 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+
+    private StringBuilder appendExact(StringBuilder builder, boolean negative, double value) {
+        BigDecimal shortest = BigDecimal.valueOf(value).stripTrailingZeros();
+        BigDecimal rounded;
+        if (shortest.scale() <= precision) {
+            rounded = shortest;
+        } else if (roundingMode == RoundingMode.HALF_EVEN
+                && shortest.setScale(precision, RoundingMode.HALF_UP).compareTo(shortest.setScale(precision, RoundingMode.HALF_DOWN)) != 0) {
+            rounded = new BigDecimal(value).setScale(precision, RoundingMode.HALF_EVEN);
+        } else {
+            rounded = shortest.setScale(precision, roundingMode);
+        }
+
+        rounded = rounded.stripTrailingZeros();
+        if (negative && rounded.signum() == 0) {
+            builder.append('-');
+        }
+        return builder.append(rounded.toPlainString());
+    }
+
+    private static int clamp(int precision) {
+        return Math.max(0, Math.min(MAX_PRECISION, precision));
+    }
+}
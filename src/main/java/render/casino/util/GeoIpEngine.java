@@ -0,0 +1,136 @@
+package render.casino.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.Reader;
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.model.CityResponse;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GeoLite2 lookups over a memory-mapped database file.
+ * <p>
+ * The database stays in the page cache instead of the heap, decoded nodes are shared through a {@link CHMCache} and
+ * finished {@link GeoUtil.GeoData} results are kept in a bounded cache keyed by the address string, so repeated lookups
+ * of the same address (every admin table row renders one) do not touch the reader at all.
+ * <p>
+ * An engine is reference counted so it can be swapped while lookups are running: the owner holds one reference,
+ * every lookup {@link #retain() retains} one for its duration, and the reader is closed by whoever releases the last
+ * one after the owner has {@link #retire() retired} it. Lookups never wait for a swap or a close.
+ * <p>
+ * Rewriting a mapped file under running lookups can make them read garbage or fault, so the engine maps a private
+ * copy of the database that nothing else writes to and deletes it when it is closed.
+ */
+public class GeoIpEngine implements Closeable {
+
+    private final File file;
+    private final File mappedFile;
+    private final DatabaseReader reader;
+    private final Cache<String, GeoUtil.GeoData> results;
+    private final long fileSize;
+    private final long fileModified;
+
+    //starts with the owner reference, reaching 0 closes the reader and can never be retained again
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    //fileSize and fileModified are those of file when mappedFile was copied from it
+    public GeoIpEngine(File file, long fileSize, long fileModified, File mappedFile, long maxResults) throws IOException {
+        this.file = file;
+        this.mappedFile = mappedFile;
+        this.reader = new DatabaseReader.Builder(mappedFile)
+                .fileMode(Reader.FileMode.MEMORY_MAPPED)
+                .withCache(new CHMCache())
+                .build();
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxResults)
+                .build();
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    //true when the file on disk is no longer the one this engine's copy was taken from
+    public boolean isStale() {
+        return file.length() != fileSize || file.lastModified() != fileModified;
+    }
+
+    public String getDatabaseType() {
+        return reader.getMetadata().getDatabaseType();
+    }
+
+    public boolean retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            try {
+                close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    //drops the owner reference, the reader is closed once the last running lookup releases it
+    public void retire() {
+        release();
+    }
+
+    public GeoUtil.GeoData lookup(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return GeoUtil.GeoData.UNKNOWN;
+        }
+        return results.get(ip, this::resolve);
+    }
+
+    public GeoUtil.GeoData lookup(InetAddress address) throws IOException {
+        Optional<CityResponse> response;
+        try {
+            response = reader.tryCity(address);
+        } catch (Exception ex) {
+            throw new IOException("GeoIP lookup failed for " + address.getHostAddress(), ex);
+        }
+        return response.map(GeoUtil.GeoData::of).orElse(GeoUtil.GeoData.UNKNOWN);
+    }
+
+    //only literals are looked up, a host name or a malformed value must never reach the resolver
+    private GeoUtil.GeoData resolve(String ip) {
+        InetAddress address = IpUtil.toInetAddress(ip);
+        if (address == null) {
+            return GeoUtil.GeoData.UNKNOWN;
+        }
+
+        try {
+            return lookup(address);
+        } catch (Exception ex) {
+            return GeoUtil.GeoData.UNKNOWN;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        results.invalidateAll();
+        try {
+            reader.close();
+        } finally {
+            Files.deleteIfExists(mappedFile.toPath());
+        }
+    }
+}
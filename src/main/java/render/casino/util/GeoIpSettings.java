@@ -0,0 +1,28 @@
+package render.casino.util;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands the GeoIP settings to {@link GeoUtil}, which is used statically from entities and services.
+ */
+@Component
+public class GeoIpSettings {
+
+    //path of a GeoLite2-City.mmdb to use instead of the bundled one
+    @Value("${yukitale.app.geoipPath:}")
+    private String path;
+
+    @Value("${yukitale.app.geoipCacheSize:100000}")
+    private long cacheSize;
+
+    //a database given by path is swapped in when the file changes
+    @Value("${yukitale.app.geoipWatch:true}")
+    private boolean watch;
+
+    @PostConstruct
+    public void init() {
+        GeoUtil.configure(path, cacheSize, watch);
+    }
+}
@@ -0,0 +1,85 @@
+package render.casino.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directory of the configured GeoLite2 database and asks {@link GeoUtil#reload()} to swap in a new file
+ * once it has stopped changing.
+ * <p>
+ * Publish an update by writing the new database next to the configured one and renaming it over it
+ * ({@code mv -f GeoLite2-City.mmdb.new GeoLite2-City.mmdb}). The watcher waits until the file has kept the same size
+ * and modification time for {@link #SETTLE_MS}, and the engines never map the configured file itself but a private
+ * copy of it, so nothing an update does to that path can reach a mapping that lookups are reading. A file copied in
+ * place is still safe for running lookups, but a copy taken while it is being written is rejected by the copy check
+ * or the validation in {@link GeoUtil#reload()} and picked up again on the next event or re-check.
+ */
+public class GeoIpWatcher implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeoIpWatcher.class);
+
+    private static final long SETTLE_MS = 2000;
+    //missed or overflowed events are caught by re-checking the file at least this often
+    private static final long RECHECK_MS = 60000;
+
+    private final Path path;
+
+    private GeoIpWatcher(Path path) {
+        this.path = path.toAbsolutePath();
+    }
+
+    public static void start(Path path) {
+        Thread thread = new Thread(new GeoIpWatcher(path), "geoip-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        Path directory = path.getParent();
+        try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(RECHECK_MS, TimeUnit.MILLISECONDS);
+                boolean changed = key == null;
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || path.getFileName().equals(event.context())) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                }
+
+                if (changed && GeoUtil.isStale()) {
+                    awaitSettled();
+                    GeoUtil.reload();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            LOGGER.error("GeoIP database watcher stopped: {}", ex.getMessage());
+        }
+    }
+
+    private void awaitSettled() throws InterruptedException {
+        long size = -1;
+        long modified = -1;
+        while (true) {
+            long currentSize = path.toFile().length();
+            long currentModified = path.toFile().lastModified();
+            if (currentSize == size && currentModified == modified) {
+                return;
+            }
+            size = currentSize;
+            modified = currentModified;
+            Thread.sleep(SETTLE_MS);
+        }
+    }
+}
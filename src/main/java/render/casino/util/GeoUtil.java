@@ -1,38 +1,172 @@
 package render.casino.util;
 
-import com.maxmind.geoip2.DatabaseReader;
 import com.maxmind.geoip2.model.CityResponse;
 import jakarta.persistence.Embeddable;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.experimental.UtilityClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 @UtilityClass
 public class GeoUtil {
 
-    private DatabaseReader databaseReader;
+    private final Logger LOGGER = LoggerFactory.getLogger(GeoUtil.class);
 
-    static {
+    private final String DATABASE_RESOURCE = "/GeoLite2-City.mmdb";
+    //any address works, it only has to walk the search tree and decode a record without failing
+    private final String VALIDATION_ADDRESS = "8.8.8.8";
+
+    //set by GeoIpSettings on startup, lookups made before that use the bundled database
+    private final AtomicReference<GeoIpEngine> engine = new AtomicReference<>();
+    private volatile long cacheSize = 100_000L;
+
+    //an empty path keeps the bundled database, a database given by path is watched when watch is set
+    public synchronized void configure(String path, long cacheSize, boolean watch) {
+        GeoUtil.cacheSize = cacheSize;
+        if (path == null || path.isBlank()) {
+            return;
+        }
+
+        GeoIpEngine previous;
         try {
-            databaseReader = new DatabaseReader.Builder(GeoUtil.class.getResourceAsStream("/GeoLite2-City.mmdb")).build();
+            previous = engine.getAndSet(openEngine(new File(path)));
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
+        }
+        if (previous != null) {
+            previous.retire();
+        }
+        if (watch) {
+            GeoIpWatcher.start(Paths.get(path));
         }
     }
 
     public GeoData getGeo(String ip) {
+        GeoIpEngine current = acquire();
+        try {
+            return current.lookup(ip);
+        } finally {
+            current.release();
+        }
+    }
+
+    //every distinct address is looked up once against a single engine, large batches can be spread over the common pool
+    public Map<String, GeoData> getGeo(Collection<String> ips, boolean parallel) {
+        Set<String> distinct = new HashSet<>(ips);
+        distinct.remove(null);
+
+        Map<String, GeoData> result = new ConcurrentHashMap<>(distinct.size() * 4 / 3 + 1);
+        GeoIpEngine current = acquire();
         try {
-            InetAddress ipAddress = InetAddress.getByName(ip);
-            CityResponse cityResponse = databaseReader.city(ipAddress);
-            if (cityResponse == null) {
-                return new GeoData();
+            (parallel ? distinct.parallelStream() : distinct.stream()).forEach(ip -> result.put(ip, current.lookup(ip)));
+        } finally {
+            current.release();
+        }
+        return result;
+    }
+
+    public boolean isStale() {
+        GeoIpEngine current = engine.get();
+        return current != null && current.isStale();
+    }
+
+    //copies and validates the database file again and swaps it in, lookups keep using the old engine until then
+    public synchronized boolean reload() {
+        GeoIpEngine current = engine.get();
+        if (current == null) {
+            return false;
+        }
+        GeoIpEngine next = null;
+        try {
+            next = openEngine(current.getFile());
+            if (!next.getDatabaseType().contains("City")) {
+                throw new IOException("unexpected database type " + next.getDatabaseType());
             }
-            return new GeoData(cityResponse.getCountry().getIsoCode(), cityResponse.getCountry().getName(), cityResponse.getCity().getName());
+            next.lookup(InetAddress.getByName(VALIDATION_ADDRESS));
         } catch (Exception ex) {
-            return new GeoData();
+            LOGGER.error("GeoIP database {} rejected: {}", current.getFile(), ex.getMessage());
+            if (next != null) {
+                next.retire();
+            }
+            return false;
+        }
+
+        engine.getAndSet(next).retire();
+        LOGGER.info("GeoIP database {} reloaded", next.getFile());
+        return true;
+    }
+
+    //a retired engine can not be retained anymore, the loop then picks up the one that replaced it
+    private GeoIpEngine acquire() {
+        while (true) {
+            GeoIpEngine current = engine.get();
+            if (current == null) {
+                current = createEngine();
+            }
+            if (current.retain()) {
+                return current;
+            }
+        }
+    }
+
+    //opens the bundled database unless an engine was set meanwhile
+    private synchronized GeoIpEngine createEngine() {
+        GeoIpEngine current = engine.get();
+        if (current != null) {
+            return current;
+        }
+
+        //a classpath resource can be inside the jar, it has to be on disk to be memory-mapped
+        try (InputStream inputStream = GeoUtil.class.getResourceAsStream(DATABASE_RESOURCE)) {
+            if (inputStream == null) {
+                throw new IOException("GeoIP database " + DATABASE_RESOURCE + " not found");
+            }
+            Path temp = Files.createTempFile("GeoLite2-City-", ".mmdb");
+            temp.toFile().deleteOnExit();
+            Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            current = new GeoIpEngine(temp.toFile(), temp.toFile().length(), temp.toFile().lastModified(), temp.toFile(),
+                    cacheSize);
+            engine.set(current);
+            return current;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //maps a private copy, the configured file may be rewritten in place while lookups read the mapping
+    private GeoIpEngine openEngine(File file) throws IOException {
+        long size = file.length();
+        long modified = file.lastModified();
+
+        Path copy = Files.createTempFile("GeoLite2-City-", ".mmdb");
+        copy.toFile().deleteOnExit();
+        try {
+            Files.copy(file.toPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+            //a copy taken while the file was being written is retried on the next change or re-check
+            if (file.length() != size || file.lastModified() != modified) {
+                throw new IOException("changed while it was copied");
+            }
+            return new GeoIpEngine(file, size, modified, copy.toFile(), cacheSize);
+        } catch (IOException ex) {
+            Files.deleteIfExists(copy);
+            throw ex;
         }
     }
 
@@ -41,6 +175,8 @@ public class GeoUtil {
     @Getter
     public static class GeoData {
 
+        public static final GeoData UNKNOWN = new GeoData();
+
         private final String countryCode;
         private final String countryName;
         private final String cityName;
@@ -51,6 +187,10 @@ public class GeoUtil {
             this.cityName = null;
         }
 
+        static GeoData of(CityResponse response) {
+            return new GeoData(response.getCountry().getIsoCode(), response.getCountry().getName(), response.getCity().getName());
+        }
+
         @Override
         public String toString() {
             return this.countryName == null ? "N/A" : this.countryCode + ", " + this.countryName + ", " + this.cityName;
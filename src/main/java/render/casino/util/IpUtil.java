@@ -0,0 +1,360 @@
+package render.casino.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+/**
+ * Strict IPv4/IPv6 literal parsing that never falls back to the resolver.
+ * <p>
+ * Values are taken the way they arrive from proxies: only the first hop of a comma separated {@code X-Forwarded-For}
+ * chain is used, surrounding whitespace, a {@code :port} suffix, IPv6 brackets and a {@code %zone} are dropped, and
+ * IPv4-mapped IPv6 addresses are treated as IPv4. Anything else, host names included, is rejected.
+ * <p>
+ * {@link #parse(CharSequence, byte[])} writes into a caller supplied buffer and does not allocate. The stored form
+ * ({@link #toBinary(String)}) is always 16 bytes with IPv4 mapped into {@code ::ffff:0:0/96}, so both families compare
+ * and range-scan as plain unsigned byte strings.
+ */
+@UtilityClass
+public class IpUtil {
+
+    public final int IPV4_LENGTH = 4;
+    public final int IPV6_LENGTH = 16;
+
+    private final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[IPV6_LENGTH]);
+
+    private final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Parses the first address in {@code value} into {@code out}, which must hold 16 bytes.
+     *
+     * @return {@link #IPV4_LENGTH} or {@link #IPV6_LENGTH} for the number of bytes written, -1 if it is not a literal
+     */
+    public int parse(CharSequence value, byte[] out) {
+        if (value == null) {
+            return -1;
+        }
+
+        int length = value.length();
+        int start = 0;
+        while (start < length && isSpace(value.charAt(start))) {
+            start++;
+        }
+        int end = indexOf(value, ',', start, length);
+        if (end < 0) {
+            end = length;
+        }
+        while (end > start && isSpace(value.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return -1;
+        }
+
+        if (value.charAt(start) == '[') {
+            int close = indexOf(value, ']', start + 1, end);
+            if (close < 0 || (close + 1 != end && !isPort(value, close + 1, end))) {
+                return -1;
+            }
+            return parseIpv6(value, start + 1, close, out);
+        }
+
+        int colon = indexOf(value, ':', start, end);
+        if (colon < 0) {
+            return parseIpv4(value, start, end, out, 0) ? IPV4_LENGTH : -1;
+        }
+        if (indexOf(value, ':', colon + 1, end) < 0) {
+            return isPort(value, colon, end) && parseIpv4(value, start, colon, out, 0) ? IPV4_LENGTH : -1;
+        }
+        return parseIpv6(value, start, end, out);
+    }
+
+    public boolean isValid(String value) {
+        return parse(value, BUFFER.get()) > 0;
+    }
+
+    //canonical text of the first hop (dotted quad, RFC 5952 for IPv6) or null when it is not a literal
+    public String normalize(String value) {
+        byte[] buffer = BUFFER.get();
+        int length = parse(value, buffer);
+        return length < 0 ? null : format(buffer, length);
+    }
+
+    //16 byte stored form or null when it is not a literal
+    public byte[] toBinary(String value) {
+        byte[] buffer = BUFFER.get();
+        int length = parse(value, buffer);
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] binary = new byte[IPV6_LENGTH];
+        if (length == IPV4_LENGTH) {
+            binary[10] = (byte) 0xff;
+            binary[11] = (byte) 0xff;
+            System.arraycopy(buffer, 0, binary, 12, IPV4_LENGTH);
+        } else {
+            System.arraycopy(buffer, 0, binary, 0, IPV6_LENGTH);
+        }
+        return binary;
+    }
+
+    //InetAddress.getByAddress only wraps the bytes, unlike getByName it never does a lookup
+    public InetAddress toInetAddress(String value) {
+        byte[] buffer = BUFFER.get();
+        int length = parse(value, buffer);
+        if (length < 0) {
+            return null;
+        }
+
+        try {
+            return InetAddress.getByAddress(Arrays.copyOf(buffer, length));
+        } catch (UnknownHostException ex) {
+            return null;
+        }
+    }
+
+    //text of a stored 16 byte address or of a plain 4 byte one
+    public String format(byte[] address) {
+        if (address == null) {
+            return null;
+        }
+        if (address.length == IPV6_LENGTH && isMappedIpv4(address)) {
+            return formatIpv4(address, 12);
+        }
+        return format(address, address.length);
+    }
+
+    private String format(byte[] address, int length) {
+        if (length == IPV4_LENGTH) {
+            return formatIpv4(address, 0);
+        }
+
+        //the longest run of two or more zero groups collapses to "::", the first one wins a tie
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < 8; ) {
+            if (group(address, i) != 0) {
+                i++;
+                continue;
+            }
+            int runStart = i;
+            while (i < 8 && group(address, i) == 0) {
+                i++;
+            }
+            if (i - runStart > bestLength) {
+                bestStart = runStart;
+                bestLength = i - runStart;
+            }
+        }
+
+        StringBuilder builder = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                builder.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ':') {
+                builder.append(':');
+            }
+            appendHex(builder, group(address, i));
+        }
+        return builder.toString();
+    }
+
+    private String formatIpv4(byte[] address, int offset) {
+        StringBuilder builder = new StringBuilder(15);
+        for (int i = 0; i < IPV4_LENGTH; i++) {
+            if (i > 0) {
+                builder.append('.');
+            }
+            builder.append(address[offset + i] & 0xff);
+        }
+        return builder.toString();
+    }
+
+    private void appendHex(StringBuilder builder, int group) {
+        boolean leading = true;
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            int digit = (group >> shift) & 0xf;
+            if (digit != 0 || !leading || shift == 0) {
+                builder.append(HEX[digit]);
+                leading = false;
+            }
+        }
+    }
+
+    private int group(byte[] address, int index) {
+        return ((address[index * 2] & 0xff) << 8) | (address[index * 2 + 1] & 0xff);
+    }
+
+    private boolean isMappedIpv4(byte[] address) {
+        for (int i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[10] == (byte) 0xff && address[11] == (byte) 0xff;
+    }
+
+    //dotted quad without leading zeros, "010" is rejected rather than guessed as octal
+    private boolean parseIpv4(CharSequence value, int from, int to, byte[] out, int offset) {
+        int part = 0;
+        int i = from;
+        while (part < IPV4_LENGTH) {
+            int digitsStart = i;
+            int octet = 0;
+            while (i < to && i - digitsStart < 3) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                octet = octet * 10 + (c - '0');
+                i++;
+            }
+
+            int digits = i - digitsStart;
+            if (digits == 0 || octet > 255 || (digits > 1 && value.charAt(digitsStart) == '0')) {
+                return false;
+            }
+            out[offset + part++] = (byte) octet;
+
+            if (part < IPV4_LENGTH) {
+                if (i >= to || value.charAt(i) != '.') {
+                    return false;
+                }
+                i++;
+            }
+        }
+        return i == to;
+    }
+
+    private int parseIpv6(CharSequence value, int from, int to, byte[] out) {
+        int zone = indexOf(value, '%', from, to);
+        if (zone >= 0) {
+            to = zone;
+        }
+        if (to - from < 2) {
+            return -1;
+        }
+
+        int groups = 0;
+        int compressed = -1;
+        int i = from;
+        if (value.charAt(i) == ':') {
+            if (value.charAt(i + 1) != ':') {
+                return -1;
+            }
+            compressed = 0;
+            i += 2;
+        }
+
+        while (i < to) {
+            if (groups == 8) {
+                return -1;
+            }
+
+            int groupStart = i;
+            int group = 0;
+            int digit;
+            while (i < to && (digit = hexDigit(value.charAt(i))) >= 0) {
+                if (i - groupStart == 4) {
+                    return -1;
+                }
+                group = (group << 4) | digit;
+                i++;
+            }
+
+            if (i < to && value.charAt(i) == '.') {
+                //trailing embedded IPv4 takes the last two groups
+                if (groups > 6 || !parseIpv4(value, groupStart, to, out, groups * 2)) {
+                    return -1;
+                }
+                groups += 2;
+                break;
+            }
+            if (i == groupStart) {
+                return -1;
+            }
+
+            out[groups * 2] = (byte) (group >> 8);
+            out[groups * 2 + 1] = (byte) group;
+            groups++;
+
+            if (i == to) {
+                break;
+            }
+            if (value.charAt(i) != ':' || ++i == to) {
+                return -1;
+            }
+            if (value.charAt(i) == ':') {
+                if (compressed >= 0) {
+                    return -1;
+                }
+                compressed = groups;
+                i++;
+            }
+        }
+
+        if (compressed < 0) {
+            if (groups != 8) {
+                return -1;
+            }
+        } else {
+            if (groups == 8) {
+                return -1;
+            }
+            int tail = groups - compressed;
+            System.arraycopy(out, compressed * 2, out, IPV6_LENGTH - tail * 2, tail * 2);
+            Arrays.fill(out, compressed * 2, IPV6_LENGTH - tail * 2, (byte) 0);
+        }
+
+        if (isMappedIpv4(out)) {
+            System.arraycopy(out, 12, out, 0, IPV4_LENGTH);
+            return IPV4_LENGTH;
+        }
+        return IPV6_LENGTH;
+    }
+
+    private boolean isPort(CharSequence value, int colon, int to) {
+        if (value.charAt(colon) != ':' || to - colon < 2 || to - colon > 6) {
+            return false;
+        }
+        for (int i = colon + 1; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private int indexOf(CharSequence value, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (value.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+}
@@ -0,0 +1,91 @@
+package render.casino.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money as a primitive {@code long} of minor units (cents), stored as {@code DECIMAL(19,2)} through
+ * {@code MoneyConverter}.
+ * <p>
+ * Arithmetic is exact and throws {@link ArithmeticException} on overflow instead of wrapping, sums and comparisons
+ * are plain {@code long} operations, and {@link BigDecimal} is only used at the edges: converting from decimal input
+ * and to and from the database.
+ */
+@UtilityClass
+public class Money {
+
+    public final int SCALE = 2;
+    public final long UNIT = 100;
+
+    public final long ZERO = 0;
+
+    public long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public long multiply(long amount, long quantity) {
+        return Math.multiplyExact(amount, quantity);
+    }
+
+    //amount * percent / 100 with the percent in minor units too (250 = 2.5%), rounded half-even to a cent
+    public long percent(long amount, long percent) {
+        return divideHalfEven(Math.multiplyExact(amount, percent), UNIT * 100);
+    }
+
+    public long ofUnits(BigDecimal units) {
+        return units == null ? ZERO : units.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    //decimal input such as 12.34 from forms or legacy doubles, rounded half-even on its shortest representation
+    public long ofUnits(double units) {
+        if (Double.isNaN(units) || Double.isInfinite(units)) {
+            throw new ArithmeticException("Not a money amount: " + units);
+        }
+        return ofUnits(BigDecimal.valueOf(units));
+    }
+
+    public BigDecimal toUnits(long amount) {
+        return BigDecimal.valueOf(amount, SCALE);
+    }
+
+    public double toDouble(long amount) {
+        return amount / (double) UNIT;
+    }
+
+    //same output as the old "#0.##" DecimalFormat: no grouping, '.' separator, no trailing zeros
+    public String format(long amount) {
+        return append(new StringBuilder(24), amount).toString();
+    }
+
+    public StringBuilder append(StringBuilder builder, long amount) {
+        if (amount < 0) {
+            builder.append('-');
+        }
+
+        long units = Math.abs(amount / UNIT);
+        int cents = (int) Math.abs(amount % UNIT);
+        builder.append(units);
+        if (cents != 0) {
+            builder.append('.').append((char) ('0' + cents / 10));
+            if (cents % 10 != 0) {
+                builder.append((char) ('0' + cents % 10));
+            }
+        }
+        return builder;
+    }
+
+    private long divideHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor) * 2;
+        if (remainder > divisor || (remainder == divisor && (quotient & 1) != 0)) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+}
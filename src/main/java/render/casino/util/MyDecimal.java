@@ -2,13 +2,16 @@ package render.casino.util;
 
 import lombok.Getter;
 
-import java.math.RoundingMode;
 import java.text.DecimalFormat;
 
 public class MyDecimal {
 
-    private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#0.##################");
-    private static final DecimalFormat USD_FORMAT = new DecimalFormat("#0.##");
+    private static final FixedPointFormat DECIMAL_FORMAT = FixedPointFormat.of(18);
+    private static final FixedPointFormat USD_FORMAT = FixedPointFormat.of(2);
+
+    //the only locale dependent output, DecimalFormat is not thread-safe so every thread gets its own copy
+    private static final ThreadLocal<DecimalFormat> LOCALE_DECIMAL_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#0.##################"));
+    private static final ThreadLocal<DecimalFormat> LOCALE_USD_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#0.##"));
 
     @Getter
     private final double value;
@@ -34,21 +37,18 @@ public class MyDecimal {
 
     @Override
     public String toString() {
-        return Double.isNaN(this.value) ? "0" : this.usd ? USD_FORMAT.format(this.value).replace(",", ".") : DECIMAL_FORMAT.format(this.value).replace(",", ".");
+        return Double.isNaN(this.value) ? "0" : this.usd ? USD_FORMAT.format(this.value) : DECIMAL_FORMAT.format(this.value);
     }
 
     public String toString(int n) {
-        DecimalFormat decimalFormat = new DecimalFormat("#0." + "#".repeat(Math.max(0, n)));
-        return Double.isNaN(this.value) ? "0" : this.usd ? USD_FORMAT.format(this.value).replace(",", ".") : decimalFormat.format(this.value).replace(",", ".");
+        return Double.isNaN(this.value) ? "0" : this.usd ? USD_FORMAT.format(this.value) : FixedPointFormat.of(n).format(this.value);
     }
 
     public String toStringFloor(int n) {
-        DecimalFormat decimalFormat = new DecimalFormat("#0." + "#".repeat(Math.max(0, n)));
-        decimalFormat.setRoundingMode(RoundingMode.FLOOR);
-        return Double.isNaN(this.value) ? "0" : this.usd ? USD_FORMAT.format(this.value).replace(",", ".") : decimalFormat.format(this.value).replace(",", ".");
+        return Double.isNaN(this.value) ? "0" : this.usd ? USD_FORMAT.format(this.value) : FixedPointFormat.floor(n).format(this.value);
     }
 
     public String toStringWithComma() {
-        return Double.isNaN(this.value) ? "0" : this.usd ? USD_FORMAT.format(this.value) : DECIMAL_FORMAT.format(this.value);
+        return Double.isNaN(this.value) ? "0" : this.usd ? LOCALE_USD_FORMAT.get().format(this.value) : LOCALE_DECIMAL_FORMAT.get().format(this.value);
     }
 }
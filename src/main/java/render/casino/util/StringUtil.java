@@ -2,26 +2,145 @@ package render.casino.util;
 
 import lombok.experimental.UtilityClass;
 
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 import java.util.Date;
 
+/**
+ * Date formatting on epoch millis in the server time zone.
+ * <p>
+ * The date part ({@code yyyy/MM/dd} and {@code MM/dd}) is formatted once per local day and kept in a small table of
+ * immutable entries that threads may read and replace without locking. The time of day is then written from the
+ * millis with plain arithmetic, which is valid as long as the entry's zone offset is, so an entry never spans a
+ * daylight saving transition.
+ */
 @UtilityClass
 public class StringUtil {
 
-    private final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-    private final SimpleDateFormat DATE_FORMAT_WITHOUT_SECONDS = new SimpleDateFormat("yyyy/MM/dd HH:mm");
+    private final ZoneId ZONE = ZoneId.systemDefault();
+    private final ZoneRules ZONE_RULES = ZONE.getRules();
 
-    private final SimpleDateFormat DATE_FORMAT_WITHOUT_YEAR = new SimpleDateFormat("MM/dd HH:mm");
+    private final DateTimeFormatter DATE_PREFIX = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    private final DateTimeFormatter DATE_PREFIX_WITHOUT_YEAR = DateTimeFormatter.ofPattern("MM/dd");
+
+    private final long MILLIS_PER_DAY = 86_400_000L;
+
+    //direct mapped by UTC day, entries only hold final fields so a racy read always sees a complete one
+    private final DayPrefix[] DAY_PREFIXES = new DayPrefix[512];
 
     public String formatDate(Date date) {
-        return DATE_FORMAT.format(date);
+        return formatDate(date.getTime());
     }
 
     public String formatDateWithoutYears(Date date) {
-        return DATE_FORMAT_WITHOUT_YEAR.format(date);
+        return formatDateWithoutYears(date.getTime());
     }
 
     public String formatDateWithoutSeconds(Date date) {
-        return DATE_FORMAT_WITHOUT_SECONDS.format(date);
+        return formatDateWithoutSeconds(date.getTime());
+    }
+
+    //yyyy/MM/dd HH:mm:ss
+    public String formatDate(long millis) {
+        DayPrefix day = getDayPrefix(millis);
+        return format(day.datePrefix, day.secondOfDay(millis), true);
+    }
+
+    //MM/dd HH:mm
+    public String formatDateWithoutYears(long millis) {
+        DayPrefix day = getDayPrefix(millis);
+        return format(day.datePrefixWithoutYear, day.secondOfDay(millis), false);
+    }
+
+    //yyyy/MM/dd HH:mm
+    public String formatDateWithoutSeconds(long millis) {
+        DayPrefix day = getDayPrefix(millis);
+        return format(day.datePrefix, day.secondOfDay(millis), false);
+    }
+
+    public String formatLastActivity(long lastActivity) {
+        long diff = (System.currentTimeMillis() - lastActivity) / 1000L;
+        if (diff < 60) {
+            return diff + " сек. назад";
+        } else if (diff > 86400) {
+            return formatDate(lastActivity);
+        } else if (diff > 3600) {
+            return diff / 3600 + "ч. назад";
+        } else {
+            return diff / 60 + " мин. назад";
+        }
+    }
+
+    private String format(char[] prefix, int secondOfDay, boolean seconds) {
+        char[] chars = new char[prefix.length + (seconds ? 9 : 6)];
+        System.arraycopy(prefix, 0, chars, 0, prefix.length);
+
+        int position = prefix.length;
+        chars[position++] = ' ';
+        position = writeTwoDigits(chars, position, secondOfDay / 3600);
+        chars[position++] = ':';
+        position = writeTwoDigits(chars, position, secondOfDay / 60 % 60);
+        if (seconds) {
+            chars[position++] = ':';
+            writeTwoDigits(chars, position, secondOfDay % 60);
+        }
+        return new String(chars);
+    }
+
+    private int writeTwoDigits(char[] chars, int position, int value) {
+        chars[position] = (char) ('0' + value / 10);
+        chars[position + 1] = (char) ('0' + value % 10);
+        return position + 2;
+    }
+
+    private DayPrefix getDayPrefix(long millis) {
+        int slot = (int) (Math.floorDiv(millis, MILLIS_PER_DAY) & (DAY_PREFIXES.length - 1));
+        DayPrefix day = DAY_PREFIXES[slot];
+        if (day == null || millis < day.from || millis >= day.until) {
+            day = new DayPrefix(millis);
+            DAY_PREFIXES[slot] = day;
+        }
+        return day;
+    }
+
+    private static class DayPrefix {
+
+        private final long from;
+        private final long until;
+        private final long offsetMillis;
+        private final char[] datePrefix;
+        private final char[] datePrefixWithoutYear;
+
+        private DayPrefix(long millis) {
+            Instant instant = Instant.ofEpochMilli(millis);
+            LocalDate date = LocalDate.ofInstant(instant, ZONE);
+
+            long from = date.atStartOfDay(ZONE).toInstant().toEpochMilli();
+            long until = date.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+
+            //narrowed to the part of the day with a single offset
+            ZoneOffsetTransition previous = ZONE_RULES.previousTransition(instant.plusMillis(1));
+            if (previous != null) {
+                from = Math.max(from, previous.toEpochSecond() * 1000L);
+            }
+            ZoneOffsetTransition next = ZONE_RULES.nextTransition(instant);
+            if (next != null) {
+                until = Math.min(until, next.toEpochSecond() * 1000L);
+            }
+
+            this.from = from;
+            this.until = until;
+            this.offsetMillis = ZONE_RULES.getOffset(instant).getTotalSeconds() * 1000L;
+            this.datePrefix = DATE_PREFIX.format(date).toCharArray();
+            this.datePrefixWithoutYear = DATE_PREFIX_WITHOUT_YEAR.format(date).toCharArray();
+        }
+
+        private int secondOfDay(long millis) {
+            return (int) (Math.floorMod(millis + offsetMillis, MILLIS_PER_DAY) / 1000L);
+        }
     }
 }
@@ -0,0 +1,12 @@
+-- One-off backfill of users.reg_ip_address and users.last_ip_address from the text columns, run once before deploying
+-- the build that looks users up by address. The binary form is the one of IpUtil.toBinary: 16 bytes, IPv4 mapped into
+-- ::ffff:0:0/96. Rows whose text is not a single literal, like a forwarded list, are filled by their next save.
+UPDATE users
+SET reg_ip_address = IF(IS_IPV4(reg_ip), CONCAT(UNHEX('00000000000000000000FFFF'), INET6_ATON(reg_ip)), INET6_ATON(reg_ip))
+WHERE reg_ip_address IS NULL
+  AND (IS_IPV4(reg_ip) OR IS_IPV6(reg_ip));
+
+UPDATE users
+SET last_ip_address = IF(IS_IPV4(last_ip), CONCAT(UNHEX('00000000000000000000FFFF'), INET6_ATON(last_ip)), INET6_ATON(last_ip))
+WHERE last_ip_address IS NULL
+  AND (IS_IPV4(last_ip) OR IS_IPV6(last_ip));
@@ -0,0 +1,8 @@
+-- One-off migration of the users money columns from DOUBLE to DECIMAL(19,2), run once before deploying the build
+-- that maps them through MoneyConverter. ddl-auto=update only adds columns, it never changes the type of an
+-- existing one. MySQL rounds every value to the column scale while converting, and the single statement rebuilds
+-- the table once instead of once per column.
+ALTER TABLE users
+    MODIFY COLUMN deposits DECIMAL(19,2) NOT NULL DEFAULT 0,
+    MODIFY COLUMN first_deposit_bonus_amount DECIMAL(19,2) NOT NULL DEFAULT 0,
+    MODIFY COLUMN verif_deposit_amount DECIMAL(19,2) NOT NULL DEFAULT 0;
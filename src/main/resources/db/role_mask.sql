@@ -0,0 +1,9 @@
+-- One-off backfill of users.role_mask from user_roles, run once before deploying the build that reads roles from the
+-- mask. roles.name holds the UserRoleType ordinal and every role sets the bit of its ordinal. On a schema that does not
+-- have the column yet, create it first:
+-- ALTER TABLE users ADD COLUMN role_mask INT DEFAULT 0;
+UPDATE users u
+SET u.role_mask = (SELECT COALESCE(BIT_OR(1 << r.name), 0)
+                   FROM user_roles ur
+                            JOIN roles r ON r.id = ur.role_id
+                   WHERE ur.user_id = u.id);
@@ -0,0 +1,108 @@
+package render.casino.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private static final int KEYS = 64;
+    private static final int CHECKS_PER_THREAD = 200_000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void permitsTheBurstThenRejects() {
+        RateLimiter limiter = new RateLimiter(1, 3, 100);
+
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a"));
+        assertFalse(limiter.tryAcquire("a"));
+
+        //keys do not share a bucket
+        assertTrue(limiter.tryAcquire("b"));
+    }
+
+    @Test
+    void concurrentChecksNeverPermitMoreThanTheBurst() throws Exception {
+        RateLimiter limiter = new RateLimiter(1, 10, 100);
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        List<Long> permits = run(threads, thread -> {
+            long permitted = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (limiter.tryAcquire("account")) {
+                    permitted++;
+                }
+            }
+            return permitted;
+        });
+
+        assertEquals(10, permits.stream().mapToLong(Long::longValue).sum());
+    }
+
+    //every thread hammers the same few keys, most checks are rejected CAS-free reads and the rest contend on one CAS
+    @Test
+    void checkTakesLessThanAMicrosecondUnderContention() throws Exception {
+        RateLimiter limiter = new RateLimiter(600, 100, 100_000);
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        String[] keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "user" + i + "@example.com";
+        }
+
+        //the best of a few rounds, the first ones also warm up the JIT
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Long> nanos = run(threads, thread -> {
+                long start = System.nanoTime();
+                for (int i = 0; i < CHECKS_PER_THREAD; i++) {
+                    limiter.tryAcquire(keys[(i + thread) & (KEYS - 1)]);
+                }
+                return System.nanoTime() - start;
+            });
+            long nanosPerCheck = nanos.stream().mapToLong(Long::longValue).max().orElseThrow() / CHECKS_PER_THREAD;
+            best = Math.min(best, nanosPerCheck);
+        }
+
+        assertTrue(best < TimeUnit.MICROSECONDS.toNanos(1), "a check took " + best + " ns with " + threads + " threads");
+    }
+
+    private interface Worker {
+
+        long run(int thread);
+    }
+
+    //starts the workers together and returns what each of them returned
+    private static List<Long> run(int threads, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return worker.run(thread);
+                }));
+            }
+            start.countDown();
+
+            List<Long> results = new ArrayList<>();
+            for (Future<Long> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
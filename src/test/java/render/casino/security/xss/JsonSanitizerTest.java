@@ -0,0 +1,67 @@
+package render.casino.security.xss;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.function.UnaryOperator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonSanitizerTest {
+
+    private static final UnaryOperator<String> STRIP_BRACKETS = value -> value.replace("<", "").replace(">", "");
+
+    @Test
+    void sanitizesStringValuesOnly() throws IOException {
+        assertEquals("{\"name\":\"bx/b\",\"tags\":[\"a\",\"img\",true,null],\"nested\":{\"id\":7}}",
+                sanitize("{\"name\": \"<b>x</b>\", \"tags\": [\"a\", \"<img>\", true, null], \"nested\": {\"id\": 7}}", false, 1024));
+    }
+
+    @Test
+    void keepsNumberLiterals() throws IOException {
+        assertEquals("{\"amount\":0.10,\"big\":1e3,\"negative\":-0.0,\"long\":12345678901234567890}",
+                sanitize("{\"amount\":0.10,\"big\":1e3,\"negative\":-0.0,\"long\":12345678901234567890}", false, 1024));
+    }
+
+    @Test
+    void fieldNamesAreSanitizedOnlyWhenAsked() throws IOException {
+        assertEquals("{\"<key>\":\"v\"}", sanitize("{\"<key>\":\"<v>\"}", false, 1024));
+        assertEquals("{\"key\":\"v\"}", sanitize("{\"<key>\":\"<v>\"}", true, 1024));
+    }
+
+    @Test
+    void decodesEscapesAndWritesUtf8() throws IOException {
+        assertEquals("{\"text\":\"line\\nbreak é \\\"quoted\\\"\"}",
+                sanitize("{\"text\":\"line\\nbreak \\u00e9 \\\"quoted\\\"\"}", false, 1024));
+    }
+
+    @Test
+    void bodyUpToTheLimitIsAccepted() throws IOException {
+        String json = "{\"a\":\"b\"}";
+        assertEquals(json, sanitize(json, false, json.getBytes(UTF_8).length));
+    }
+
+    @Test
+    void bodyOverTheLimitIsRejected() {
+        String json = "{\"a\":\"" + "x".repeat(100) + "\"}";
+        assertThrows(LimitedInputStream.BodyTooLargeException.class, () -> sanitize(json, false, json.getBytes(UTF_8).length - 1));
+        assertThrows(LimitedInputStream.BodyTooLargeException.class, () -> sanitize(json, false, 16));
+    }
+
+    @Test
+    void malformedJsonIsRejected() {
+        assertThrows(JsonProcessingException.class, () -> sanitize("{\"a\":", false, 1024));
+        assertThrows(JsonProcessingException.class, () -> sanitize("{a:1}", false, 1024));
+    }
+
+    private static String sanitize(String json, boolean fieldNames, long limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonSanitizer.sanitize(new LimitedInputStream(new ByteArrayInputStream(json.getBytes(UTF_8)), limit), out, fieldNames, STRIP_BRACKETS);
+        return out.toString(UTF_8);
+    }
+}
@@ -0,0 +1,81 @@
+package render.casino.security.xss;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class XSSRoutePolicyTest {
+
+    @Test
+    void unknownPathsUseTheDefaultMode() {
+        XSSRoutePolicy policy = XSSRoutePolicy.compile(XSSMode.JSON, "/api/auth/login=NONE");
+
+        assertEquals(XSSMode.JSON, policy.resolve("/"));
+        assertEquals(XSSMode.JSON, policy.resolve("/api/auth"));
+        assertEquals(XSSMode.JSON, policy.resolve("/api/auth/login/more"));
+        assertEquals(XSSMode.JSON, policy.resolve(""));
+    }
+
+    @Test
+    void exactPatternOnlyMatchesItsPath() {
+        XSSRoutePolicy policy = XSSRoutePolicy.compile(XSSMode.JSON, "/api/auth/login=NONE");
+
+        assertEquals(XSSMode.NONE, policy.resolve("/api/auth/login"));
+        assertEquals(XSSMode.JSON, policy.resolve("/api/auth/log"));
+        assertEquals(XSSMode.JSON, policy.resolve("/api/auth/logins"));
+    }
+
+    @Test
+    void prefixPatternMatchesItselfAndEverythingBelow() {
+        XSSRoutePolicy policy = XSSRoutePolicy.compile(XSSMode.JSON, "/api/admin/**=STRIP");
+
+        assertEquals(XSSMode.STRIP, policy.resolve("/api/admin"));
+        assertEquals(XSSMode.STRIP, policy.resolve("/api/admin/"));
+        assertEquals(XSSMode.STRIP, policy.resolve("/api/admin/users/1"));
+        assertEquals(XSSMode.JSON, policy.resolve("/api/administrator"));
+        assertEquals(XSSMode.JSON, policy.resolve("/api/adm"));
+    }
+
+    @Test
+    void longerPrefixWinsOverShorterOne() {
+        XSSRoutePolicy policy = XSSRoutePolicy.compile(XSSMode.JSON, "/api/**=STRIP", "/api/admin/**=SANITIZE_HTML");
+
+        assertEquals(XSSMode.STRIP, policy.resolve("/api/user"));
+        assertEquals(XSSMode.SANITIZE_HTML, policy.resolve("/api/admin/news"));
+        assertEquals(XSSMode.STRIP, policy.resolve("/api/admins"));
+    }
+
+    @Test
+    void exactPatternWinsOverPrefix() {
+        XSSRoutePolicy policy = XSSRoutePolicy.compile(XSSMode.JSON, "/api/admin/**=STRIP", "/api/admin/news=NONE");
+
+        assertEquals(XSSMode.NONE, policy.resolve("/api/admin/news"));
+        assertEquals(XSSMode.STRIP, policy.resolve("/api/admin/news/1"));
+        assertEquals(XSSMode.STRIP, policy.resolve("/api/admin/new"));
+    }
+
+    @Test
+    void lookupIgnoresCaseQueryAndPathParameters() {
+        XSSRoutePolicy policy = XSSRoutePolicy.compile(XSSMode.JSON, "/Api/Auth/Login=NONE", "/static/**=NONE");
+
+        assertEquals(XSSMode.NONE, policy.resolve("/API/AUTH/LOGIN"));
+        assertEquals(XSSMode.NONE, policy.resolve("/api/auth/login?next=/admin"));
+        assertEquals(XSSMode.NONE, policy.resolve("/api/auth/login;jsessionid=1"));
+        assertEquals(XSSMode.NONE, policy.resolve("/STATIC/js/app.js"));
+    }
+
+    @Test
+    void laterRoutesOverrideEarlierOnes() {
+        XSSRoutePolicy policy = XSSRoutePolicy.compile(XSSMode.JSON, "/api/news=NONE", " /api/news = strip ");
+
+        assertEquals(XSSMode.STRIP, policy.resolve("/api/news"));
+    }
+
+    @Test
+    void routeWithoutModeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> XSSRoutePolicy.compile(XSSMode.JSON, "/api/news"));
+        assertThrows(IllegalArgumentException.class, () -> XSSRoutePolicy.compile(XSSMode.JSON, "=NONE"));
+        assertThrows(IllegalArgumentException.class, () -> XSSRoutePolicy.compile(XSSMode.JSON, "/api/news=UNKNOWN"));
+    }
+}
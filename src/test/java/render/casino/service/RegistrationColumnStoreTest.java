@@ -0,0 +1,234 @@
+package render.casino.service;
+
+import org.junit.jupiter.api.Test;
+import render.casino.model.UserStatsSnapshot;
+import render.casino.service.RegistrationQuery.Dimension;
+import render.casino.service.RegistrationQuery.Metric;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistrationColumnStoreTest {
+
+    private static final LocalDate JAN_1 = LocalDate.of(2024, 1, 1);
+    private static final LocalDate JAN_2 = LocalDate.of(2024, 1, 2);
+    private static final LocalDate FEB_1 = LocalDate.of(2024, 2, 1);
+
+    @Test
+    void loadsEveryUser() {
+        TestStore store = new TestStore();
+        store.save(user(1, JAN_1, "google", "DE", 0, 0));
+        store.save(user(2, JAN_2, "google", "FR", 2, 5000));
+        store.save(user(3, FEB_1, "", "DE", 1, 100));
+
+        assertFalse(store.isLoaded());
+        store.load();
+
+        assertTrue(store.isLoaded());
+        assertEquals(3, store.size());
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY)), "DE", 2, 1, 100, "FR", 1, 2, 5000);
+    }
+
+    @Test
+    void changesDuringTheLoadAreReadAgainAfterIt() {
+        TestStore store = new TestStore();
+        UserStatsSnapshot before = user(1, JAN_1, "google", "DE", 0, 0);
+        UserStatsSnapshot removed = user(2, JAN_1, "google", "DE", 0, 0);
+        store.save(before);
+        store.save(removed);
+        //what the load scans, the users change right after
+        store.scanned = new LinkedHashMap<>(store.users);
+
+        UserStatsSnapshot after = user(1, JAN_1, "google", "FR", 1, 700);
+        store.save(after);
+        store.apply(before, after);
+        store.users.remove(2L);
+        store.apply(removed, null);
+        UserStatsSnapshot added = user(3, JAN_2, "bing", "PL", 0, 0);
+        store.save(added);
+        store.apply(null, added);
+
+        store.load();
+
+        assertEquals(2, store.size());
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY)), "FR", 1, 1, 700, "PL", 1, 0, 0);
+    }
+
+    @Test
+    void failedLoadIsStartedOver() {
+        TestStore store = new TestStore();
+        store.save(user(1, JAN_1, "google", "DE", 0, 0));
+        store.save(user(2, JAN_1, "google", "FR", 0, 0));
+        store.failingLoads = 1;
+
+        assertFalse(store.tryLoad());
+        assertFalse(store.isLoaded());
+
+        //read by the failed attempt, gone before the next one
+        UserStatsSnapshot removed = store.users.remove(1L);
+        store.apply(removed, null);
+
+        assertTrue(store.tryLoad());
+        assertTrue(store.isLoaded());
+        assertEquals(1, store.size());
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY)), "FR", 1, 0, 0);
+    }
+
+    @Test
+    void staleSnapshotsDoNotOverwriteTheCommittedRow() {
+        TestStore store = new TestStore();
+        UserStatsSnapshot older = user(1, JAN_1, "google", "DE", 0, 0);
+        UserStatsSnapshot newer = user(1, JAN_1, "google", "DE", 1, 900);
+        store.save(newer);
+        store.load();
+
+        //the callbacks of two commits arriving in reverse order
+        store.apply(older, newer);
+        store.apply(null, older);
+        store.refreshChanged();
+
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY)), "DE", 1, 1, 900);
+    }
+
+    @Test
+    void changesAreReadInOneBatchAndUnchangedCommitsAreSkipped() {
+        TestStore store = new TestStore();
+        UserStatsSnapshot first = user(1, JAN_1, "google", "DE", 0, 0);
+        UserStatsSnapshot second = user(2, JAN_1, "google", "DE", 0, 0);
+        store.save(first);
+        store.save(second);
+        store.load();
+
+        //a commit that only touched columns the store does not keep
+        store.apply(first, user(1, JAN_1, "google", "DE", 0, 0));
+        store.refreshChanged();
+        assertEquals(0, store.reads);
+
+        UserStatsSnapshot deposited = user(1, JAN_1, "google", "DE", 1, 300);
+        store.save(deposited);
+        store.apply(first, deposited);
+        UserStatsSnapshot moved = user(2, JAN_1, "google", "FR", 0, 0);
+        store.save(moved);
+        store.apply(second, moved);
+        //not read before the refresh
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY)), "DE", 2, 0, 0);
+
+        store.refreshChanged();
+        assertEquals(1, store.reads);
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY)), "DE", 1, 1, 300, "FR", 1, 0, 0);
+    }
+
+    @Test
+    void removedRowIsFilledWithTheLastOne() {
+        TestStore store = new TestStore();
+        store.save(user(1, JAN_1, "a", "DE", 0, 0));
+        store.save(user(2, JAN_1, "b", "FR", 0, 0));
+        store.save(user(3, JAN_1, "c", "PL", 0, 0));
+        store.load();
+
+        UserStatsSnapshot removed = store.users.remove(1L);
+        store.apply(removed, null);
+        store.refreshChanged();
+        assertEquals(2, store.size());
+
+        //user 3 now lives in the first row, updating it must not touch user 2
+        UserStatsSnapshot moved = user(3, JAN_1, "c", "IT", 1, 50);
+        store.save(moved);
+        store.apply(null, moved);
+        store.refreshChanged();
+
+        assertEquals(2, store.size());
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY)), "FR", 1, 0, 0, "IT", 1, 1, 50);
+
+        UserStatsSnapshot last = store.users.remove(3L);
+        store.apply(last, null);
+        store.refreshChanged();
+        store.apply(last, null);
+        store.refreshChanged();
+        assertEquals(1, store.size());
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY)), "FR", 1, 0, 0);
+    }
+
+    @Test
+    void queryFiltersGroupsAndLimits() {
+        TestStore store = new TestStore();
+        store.save(user(1, JAN_1, "google", "DE", 1, 1000));
+        store.save(user(2, JAN_2, "google", "DE", 0, 0));
+        store.save(user(3, JAN_2, "bing", "DE", 2, 3000));
+        store.save(user(4, FEB_1, "bing", "FR", 1, 10));
+        store.save(user(5, null, "yandex", "DE", 1, 500));
+        store.load();
+
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.REFERRER).where(Dimension.COUNTRY, "DE")),
+                "google", 2, 1, 1000, "bing", 1, 2, 3000, "yandex", 1, 1, 500);
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.REFERRER).where(Dimension.COUNTRY, "DE").top(1, Metric.DEPOSITS_SUM)),
+                "bing", 1, 2, 3000);
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.REFERRER).depositorsOnly().registeredBetween(JAN_2, FEB_1)),
+                "bing", 1, 2, 3000);
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.DAY)),
+                "2024-01-02", 2, 2, 3000, "2024-01-01", 1, 1, 1000, "2024-02-01", 1, 1, 10);
+        assertGroups(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY).registeredBetween(FEB_1, null)), "FR", 1, 1, 10);
+
+        assertTrue(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY).where(Dimension.REFERRER, "unknown")).isEmpty());
+        assertTrue(store.query(RegistrationQuery.groupBy(Dimension.COUNTRY).registeredBetween(FEB_1.plusDays(1), null)).isEmpty());
+    }
+
+    //key, registrations, deposits count, deposits sum of each group in order
+    private static void assertGroups(List<RegistrationGroup> groups, Object... expected) {
+        assertEquals(expected.length / 4, groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            RegistrationGroup group = groups.get(i);
+            assertEquals(expected[i * 4], group.getKey());
+            assertEquals(((Number) expected[i * 4 + 1]).longValue(), group.getRegistrations());
+            assertEquals(((Number) expected[i * 4 + 2]).longValue(), group.getDepositsCount());
+            assertEquals(((Number) expected[i * 4 + 3]).longValue(), group.getDepositsSum());
+        }
+    }
+
+    private static UserStatsSnapshot user(long id, LocalDate registered, String referrer, String country, long depositsCount, long deposits) {
+        return new UserStatsSnapshot(id, registered, referrer, country, "", "", "", depositsCount, deposits);
+    }
+
+    //users table in memory, the load scans a separate copy when one is set
+    private static class TestStore extends RegistrationColumnStore {
+
+        private final Map<Long, UserStatsSnapshot> users = new LinkedHashMap<>();
+        private Map<Long, UserStatsSnapshot> scanned;
+        //loads that fail after the first user
+        private int failingLoads;
+        private int reads;
+
+        private void save(UserStatsSnapshot user) {
+            users.put(user.getId(), user);
+        }
+
+        @Override
+        void readAll(Consumer<UserStatsSnapshot> consumer) {
+            for (UserStatsSnapshot user : (scanned != null ? scanned : users).values()) {
+                consumer.accept(user);
+                if (failingLoads > 0) {
+                    failingLoads--;
+                    throw new IllegalStateException("connection lost");
+                }
+            }
+        }
+
+        @Override
+        Map<Long, UserStatsSnapshot> read(List<Long> ids) {
+            reads++;
+            Map<Long, UserStatsSnapshot> found = new HashMap<>();
+            for (long id : ids) {
+                if (users.containsKey(id)) {
+                    found.put(id, users.get(id));
+                }
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package render.casino.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointFormatTest {
+
+    @Test
+    void fastPathMatchesDecimalFormat() {
+        Random random = new Random(42);
+        for (int precision = 1; precision <= 8; precision++) {
+            for (RoundingMode mode : new RoundingMode[] {RoundingMode.HALF_EVEN, RoundingMode.FLOOR}) {
+                DecimalFormat expected = decimalFormat(precision, mode);
+                FixedPointFormat format = mode == RoundingMode.FLOOR ? FixedPointFormat.floor(precision) : FixedPointFormat.of(precision);
+                for (int i = 0; i < 20000; i++) {
+                    double value = switch (i % 3) {
+                        case 0 -> random.nextDouble() * 1000;
+                        case 1 -> (random.nextInt(2_000_000) - 1_000_000) / 100.0;
+                        default -> random.nextGaussian() * 1e6;
+                    };
+                    assertEquals(expected.format(value), format.format(value), precision + " " + mode + " " + value);
+                }
+            }
+        }
+    }
+
+    @Test
+    void valuesBeyondTheFastPathMatchDecimalFormat() {
+        double[] values = {123456789012345.678, 9.87654321e17, 1e15 + 0.25, -4.5e13, 1e12, 0.1};
+        for (int precision : new int[] {2, 6, 18}) {
+            DecimalFormat expected = decimalFormat(precision, RoundingMode.HALF_EVEN);
+            for (double value : values) {
+                assertEquals(expected.format(value), FixedPointFormat.of(precision).format(value), precision + " " + value);
+            }
+        }
+    }
+
+    @Test
+    void tiesAreDecidedByTheExactBinaryValue() {
+        //0.125 and 0.375 are exact ties, 1.005 and 2.675 are stored slightly below theirs
+        assertEquals("0.12", FixedPointFormat.of(2).format(0.125));
+        assertEquals("0.38", FixedPointFormat.of(2).format(0.375));
+        assertEquals("1", FixedPointFormat.of(2).format(1.005));
+        assertEquals("2.67", FixedPointFormat.of(2).format(2.675));
+        assertEquals("2", FixedPointFormat.of(0).format(2.5));
+        assertEquals("4", FixedPointFormat.of(0).format(3.5));
+    }
+
+    @Test
+    void roundsWhereDecimalFormatDoesNot() {
+        //5.0E-4 is stored slightly above the tie, DecimalFormat prints 0
+        assertEquals("0.001", FixedPointFormat.of(3).format(5e-4));
+        //a true floor, DecimalFormat prints -0
+        assertEquals("-0.01", FixedPointFormat.floor(2).format(-1e-9));
+    }
+
+    @Test
+    void floorRoundsTowardsNegativeInfinity() {
+        assertEquals("1.99", FixedPointFormat.floor(2).format(1.999));
+        assertEquals("-1.01", FixedPointFormat.floor(2).format(-1.001));
+        assertEquals("0.3", FixedPointFormat.floor(1).format(0.3));
+    }
+
+    @Test
+    void printsNoTrailingZerosAndNoGrouping() {
+        assertEquals("1234567.5", FixedPointFormat.of(4).format(1234567.5));
+        assertEquals("-3.1", FixedPointFormat.of(2).format(-3.10));
+        assertEquals("0.05", FixedPointFormat.of(2).format(0.05));
+        assertEquals("12", FixedPointFormat.of(2).format(12.0));
+    }
+
+    @Test
+    void specialValues() {
+        assertEquals("NaN", FixedPointFormat.of(2).format(Double.NaN));
+        assertEquals("∞", FixedPointFormat.of(2).format(Double.POSITIVE_INFINITY));
+        assertEquals("-∞", FixedPointFormat.of(2).format(Double.NEGATIVE_INFINITY));
+        assertEquals("0", FixedPointFormat.of(2).format(0.0));
+        assertEquals("-0", FixedPointFormat.of(2).format(-0.0));
+        assertEquals("-0", FixedPointFormat.of(2).format(-0.001));
+    }
+
+    @Test
+    void precisionIsClamped() {
+        assertSame(FixedPointFormat.of(FixedPointFormat.MAX_PRECISION), FixedPointFormat.of(99));
+        assertSame(FixedPointFormat.of(0), FixedPointFormat.of(-1));
+        assertSame(FixedPointFormat.floor(FixedPointFormat.MAX_PRECISION), FixedPointFormat.floor(99));
+    }
+
+    @Test
+    void appendWritesAfterExistingContent() {
+        StringBuilder builder = new StringBuilder("x=");
+        assertSame(builder, FixedPointFormat.of(2).append(builder, 1.5));
+        assertEquals("x=1.5", builder.toString());
+    }
+
+    private static DecimalFormat decimalFormat(int precision, RoundingMode mode) {
+        DecimalFormat format = new DecimalFormat("#0." + "#".repeat(precision), DecimalFormatSymbols.getInstance(Locale.ROOT));
+        format.setRoundingMode(mode);
+        return format;
+    }
+}
@@ -0,0 +1,116 @@
+package render.casino.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpUtilTest {
+
+    @Test
+    void parsesIpv4IntoFourBytes() {
+        byte[] out = new byte[IpUtil.IPV6_LENGTH];
+
+        assertEquals(IpUtil.IPV4_LENGTH, IpUtil.parse("192.168.0.255", out));
+        assertArrayEquals(new byte[] {(byte) 192, (byte) 168, 0, (byte) 255}, Arrays.copyOf(out, IpUtil.IPV4_LENGTH));
+    }
+
+    @Test
+    void parsesIpv6IntoSixteenBytes() {
+        byte[] out = new byte[IpUtil.IPV6_LENGTH];
+
+        assertEquals(IpUtil.IPV6_LENGTH, IpUtil.parse("2001:db8::ff00:42", out));
+        assertArrayEquals(new byte[] {0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, 0, 0, 0x42}, out);
+    }
+
+    @Test
+    void rejectsAnythingButLiterals() {
+        assertFalse(IpUtil.isValid(null));
+        assertFalse(IpUtil.isValid(""));
+        assertFalse(IpUtil.isValid("localhost"));
+        assertFalse(IpUtil.isValid("example.com"));
+        assertFalse(IpUtil.isValid("256.1.1.1"));
+        assertFalse(IpUtil.isValid("1.2.3"));
+        assertFalse(IpUtil.isValid("1.2.3.4.5"));
+        assertFalse(IpUtil.isValid("1.2.3.4:"));
+        assertFalse(IpUtil.isValid("1.2.3.4:1234567"));
+        assertFalse(IpUtil.isValid("1:2:3:4:5:6:7:8:9"));
+        assertFalse(IpUtil.isValid("1::2::3"));
+        assertFalse(IpUtil.isValid("12345::1"));
+        assertFalse(IpUtil.isValid(":1:2"));
+        assertFalse(IpUtil.isValid("[::1"));
+    }
+
+    @Test
+    void rejectsLeadingZeroOctets() {
+        assertNull(IpUtil.normalize("01.2.3.4"));
+        assertNull(IpUtil.normalize("1.2.3.010"));
+        assertEquals("0.0.0.0", IpUtil.normalize("0.0.0.0"));
+    }
+
+    @Test
+    void normalizeTakesTheFirstHopWithoutPortOrZone() {
+        assertEquals("1.2.3.4", IpUtil.normalize(" 1.2.3.4 "));
+        assertEquals("1.2.3.4", IpUtil.normalize("1.2.3.4, 10.0.0.1"));
+        assertEquals("1.2.3.4", IpUtil.normalize("1.2.3.4:8080"));
+        assertEquals("::1", IpUtil.normalize("[::1]:80"));
+        assertEquals("::1", IpUtil.normalize("[::1]"));
+        assertEquals("fe80::1", IpUtil.normalize("fe80::1%eth0"));
+    }
+
+    @Test
+    void normalizeFollowsRfc5952() {
+        assertEquals("2001:db8::1", IpUtil.normalize("2001:DB8:0:0:0:0:0:1"));
+        assertEquals("2001:db8::1", IpUtil.normalize("2001:0db8:0000:0000:0000:0000:0000:0001"));
+        assertEquals("0:2:3:4:5:6:7:8", IpUtil.normalize("::2:3:4:5:6:7:8"));
+        assertEquals("2001:db8::1:0:0:1", IpUtil.normalize("2001:db8:0:0:1:0:0:1"));
+        assertEquals("2001:db8:0:1:1:1:1:1", IpUtil.normalize("2001:db8:0:1:1:1:1:1"));
+        assertEquals("::", IpUtil.normalize("::"));
+        assertEquals("::102:304", IpUtil.normalize("::1.2.3.4"));
+    }
+
+    @Test
+    void mappedIpv4IsTreatedAsIpv4() {
+        assertEquals("10.0.0.1", IpUtil.normalize("::ffff:10.0.0.1"));
+        assertEquals("10.0.0.1", IpUtil.normalize("::ffff:a00:1"));
+        assertArrayEquals(IpUtil.toBinary("10.0.0.1"), IpUtil.toBinary("::ffff:10.0.0.1"));
+    }
+
+    @Test
+    void toBinaryIsAlwaysSixteenBytes() {
+        byte[] ipv4 = IpUtil.toBinary("1.2.3.4");
+        assertArrayEquals(new byte[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, 1, 2, 3, 4}, ipv4);
+
+        byte[] ipv6 = IpUtil.toBinary("::1");
+        assertEquals(IpUtil.IPV6_LENGTH, ipv6.length);
+        assertEquals(1, ipv6[15]);
+
+        assertNull(IpUtil.toBinary("not an address"));
+    }
+
+    @Test
+    void toBinaryOrdersLikeTheAddresses() {
+        assertTrue(Arrays.compareUnsigned(IpUtil.toBinary("1.2.3.4"), IpUtil.toBinary("1.2.3.5")) < 0);
+        assertTrue(Arrays.compareUnsigned(IpUtil.toBinary("9.255.255.255"), IpUtil.toBinary("10.0.0.0")) < 0);
+        assertTrue(Arrays.compareUnsigned(IpUtil.toBinary("200.0.0.1"), IpUtil.toBinary("2001:db8::1")) < 0);
+    }
+
+    @Test
+    void formatRoundTripsTheStoredForm() {
+        assertEquals("1.2.3.4", IpUtil.format(IpUtil.toBinary("1.2.3.4")));
+        assertEquals("2001:db8::1", IpUtil.format(IpUtil.toBinary("2001:db8::1")));
+        assertEquals("1.2.3.4", IpUtil.format(new byte[] {1, 2, 3, 4}));
+        assertNull(IpUtil.format(null));
+    }
+
+    @Test
+    void toInetAddressNeverResolves() {
+        InetAddress address = IpUtil.toInetAddress("8.8.8.8");
+        assertNotNull(address);
+        assertEquals("8.8.8.8", address.getHostAddress());
+
+        assertNull(IpUtil.toInetAddress("example.com"));
+    }
+}